@@ -1,5 +1,7 @@
 package plc.compiler;
 
+import plc.interpreter.Span;
+
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -16,9 +18,19 @@ import java.util.regex.Pattern;
 public final class Analyzer implements Ast.Visitor<Ast> {
 
     public Scope scope;
+    private final Stdlib.Registry stdlib;
 
+    /**
+     * Creates an analyzer which resolves types and functions against the
+     * {@link Stdlib} registrations at the time it is created.
+     */
     public Analyzer(Scope scope) {
+        this(scope, Stdlib.snapshot());
+    }
+
+    public Analyzer(Scope scope, Stdlib.Registry stdlib) {
         this.scope = scope;
+        this.stdlib = stdlib;
     }
 
     @Override
@@ -29,6 +41,19 @@ public final class Analyzer implements Ast.Visitor<Ast> {
         return ast;
     }
 
+    /**
+     * Visits the AST, giving a newly created result the span of the original
+     * node.
+     */
+    @Override
+    public Ast visit(Ast ast) throws AnalysisException {
+        Ast result = Ast.Visitor.super.visit(ast);
+        if (result != ast && result.getSpan() == Span.NONE) {
+            result.setSpan(ast.getSpan());
+        }
+        return result;
+    }
+
     /**
      * Statically validates that visiting a statement returns a statement.
      */
@@ -50,7 +75,7 @@ public final class Analyzer implements Ast.Visitor<Ast> {
     public Ast.Statement.Declaration visit(Ast.Statement.Declaration ast) throws AnalysisException {
 
         Optional<Ast.Expression> val = Optional.empty();
-        Stdlib.Type leftType = Stdlib.getType(ast.getType());
+        Stdlib.Type leftType = stdlib.getType(ast.getType());
 
         if (leftType.equals(Stdlib.Type.VOID)) {
             throw new AnalysisException("Type of variable cannot be Void");
@@ -226,7 +251,7 @@ public final class Analyzer implements Ast.Visitor<Ast> {
     public Ast.Expression.Function visit(Ast.Expression.Function ast) throws AnalysisException {
         String name = ast.getName();
         int arity = ast.getArguments().size();
-        Stdlib.Function func =  Stdlib.getFunction(name,arity);
+        Stdlib.Function func =  stdlib.getFunction(name,arity);
         Ast.Expression temp = ast;
         if(func != null){
             List<Ast.Expression> visitedArgs = new ArrayList<Ast.Expression>();
@@ -1,5 +1,7 @@
 package plc.compiler;
 
+import plc.interpreter.Span;
+
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -7,15 +9,43 @@ import java.util.Optional;
 /**
  * Contains classes for the Abstract Syntax Tree (AST), which stores a
  * structural representation of the program.
+ *
+ * Each node computes its structural hash when it is constructed from the
+ * (already computed) hashes of its children, so {@link #hashCode()} is O(1)
+ * and {@link #equals(Object)} rejects most unequal trees without walking
+ * them. Nodes are therefore treated as immutable: lists passed to a
+ * constructor must not be modified afterwards. See {@link AstFactory} for
+ * sharing structurally equal subtrees.
  */
 public class Ast {
 
+    private long span = Span.NONE;
+
+    /**
+     * Returns the packed {@link Span} of the source this node was parsed
+     * from, or {@link Span#NONE}. Spans are not part of the structure of a
+     * node, so they are ignored by equals and hashCode.
+     */
+    public final long getSpan() {
+        return span;
+    }
+
+    /**
+     * Sets the span of the node. This is only called by whatever created the
+     * node (such as a parser or decoder), before the node is shared.
+     */
+    final void setSpan(long span) {
+        this.span = span;
+    }
+
     public static final class Source extends Ast {
 
         private final List<Statement> statements;
+        private final int hash;
 
         public Source(List<Statement> statements) {
             this.statements = statements;
+            this.hash = statements.hashCode();
         }
 
         public List<Statement> getStatements() {
@@ -24,7 +54,13 @@ public class Ast {
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof Source && statements.equals(((Source) obj).statements);
+            return obj == this || obj instanceof Source && hash == ((Source) obj).hash &&
+                    statements.equals(((Source) obj).statements);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
         @Override
@@ -41,9 +77,11 @@ public class Ast {
         public static final class Expression extends Statement {
 
             private final Ast.Expression expression;
+            private final int hash;
 
             public Expression(Ast.Expression expression) {
                 this.expression = expression;
+                this.hash = Objects.hash("Expression", expression);
             }
 
             public Ast.Expression getExpression() {
@@ -52,7 +90,13 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Statement.Expression && expression.equals(((Statement.Expression) obj).expression);
+                return obj == this || obj instanceof Statement.Expression && hash == ((Statement.Expression) obj).hash &&
+                        expression.equals(((Statement.Expression) obj).expression);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
             }
 
             @Override
@@ -69,11 +113,13 @@ public class Ast {
             private final String name;
             private final String type;
             private final Optional<Ast.Expression> value;
+            private final int hash;
 
             public Declaration(String name, String type, Optional<Ast.Expression> value) {
                 this.name = name;
                 this.type = type;
                 this.value = value;
+                this.hash = Objects.hash("Declaration", name, type, value);
             }
 
             public String getName() {
@@ -90,12 +136,18 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Declaration &&
+                return obj == this || obj instanceof Declaration &&
+                        hash == ((Declaration) obj).hash &&
                         name.equals(((Declaration) obj).name) &&
                         type.equals(((Declaration) obj).type) &&
                         value.equals(((Declaration) obj).value);
             }
 
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
             @Override
             public String toString() {
                 return "Declaration{" +
@@ -111,10 +163,12 @@ public class Ast {
 
             private final String name;
             private final Ast.Expression expression;
+            private final int hash;
 
             public Assignment(String name, Ast.Expression expression) {
                 this.name = name;
                 this.expression = expression;
+                this.hash = Objects.hash("Assignment", name, expression);
             }
 
             public String getName() {
@@ -127,11 +181,17 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Assignment &&
+                return obj == this || obj instanceof Assignment &&
+                        hash == ((Assignment) obj).hash &&
                         name.equals(((Assignment) obj).name) &&
                         expression.equals(((Assignment) obj).expression);
             }
 
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
             @Override
             public String toString() {
                 return "Assignment{" +
@@ -147,11 +207,13 @@ public class Ast {
             private final Ast.Expression condition;
             private final List<Statement> thenStatements;
             private final List<Statement> elseStatements;
+            private final int hash;
 
             public If(Ast.Expression condition, List<Statement> thenStatements, List<Statement> elseStatements) {
                 this.condition = condition;
                 this.thenStatements = thenStatements;
                 this.elseStatements = elseStatements;
+                this.hash = Objects.hash("If", condition, thenStatements, elseStatements);
             }
 
             public Ast.Expression getCondition() {
@@ -168,12 +230,18 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof If &&
+                return obj == this || obj instanceof If &&
+                        hash == ((If) obj).hash &&
                         condition.equals(((If) obj).condition) &&
                         thenStatements.equals(((If) obj).thenStatements) &&
                         elseStatements.equals(((If) obj).elseStatements);
             }
 
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
             @Override
             public String toString() {
                 return "If{" +
@@ -189,10 +257,12 @@ public class Ast {
 
             private final Ast.Expression condition;
             private final List<Statement> statements;
+            private final int hash;
 
             public While(Ast.Expression condition, List<Statement> statements) {
                 this.condition = condition;
                 this.statements = statements;
+                this.hash = Objects.hash("While", condition, statements);
             }
 
             public Ast.Expression getCondition() {
@@ -205,11 +275,17 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof While &&
+                return obj == this || obj instanceof While &&
+                        hash == ((While) obj).hash &&
                         condition.equals(((While) obj).condition) &&
                         statements.equals(((While) obj).statements);
             }
 
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
             @Override
             public String toString() {
                 return "While{" +
@@ -225,9 +301,16 @@ public class Ast {
     public static abstract class Expression extends Ast {
 
         protected final Stdlib.Type type;
+        private final int hash;
 
-        private Expression(Stdlib.Type type) {
+        private Expression(Stdlib.Type type, int hash) {
             this.type = type;
+            this.hash = 31 * hash + Objects.hashCode(type);
+        }
+
+        @Override
+        public final int hashCode() {
+            return hash;
         }
 
         public final Stdlib.Type getType() {
@@ -246,7 +329,7 @@ public class Ast {
             }
 
             public Literal(Stdlib.Type type, Object value) {
-                super(type);
+                super(type, Objects.hash("Literal", value));
                 this.value = value;
             }
 
@@ -256,7 +339,8 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Literal &&
+                return obj == this || obj instanceof Literal &&
+                        hashCode() == obj.hashCode() &&
                         value.equals(((Literal) obj).value) &&
                         Objects.equals(type, ((Literal) obj).type);
             }
@@ -280,7 +364,7 @@ public class Ast {
             }
 
             public Group(Stdlib.Type type, Expression expression) {
-                super(type);
+                super(type, Objects.hash("Group", expression));
                 this.expression = expression;
             }
 
@@ -290,7 +374,8 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Group &&
+                return obj == this || obj instanceof Group &&
+                        hashCode() == obj.hashCode() &&
                         expression.equals(((Group) obj).expression) &&
                         Objects.equals(type, ((Group) obj).type);
             }
@@ -316,7 +401,7 @@ public class Ast {
             }
 
             public Binary(Stdlib.Type type, String operator, Expression left, Expression right) {
-                super(type);
+                super(type, Objects.hash("Binary", operator, left, right));
                 this.operator = operator;
                 this.left = left;
                 this.right = right;
@@ -336,7 +421,8 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Binary &&
+                return obj == this || obj instanceof Binary &&
+                        hashCode() == obj.hashCode() &&
                         operator.equals(((Binary) obj).operator) &&
                         left.equals(((Binary) obj).left) &&
                         right.equals(((Binary) obj).right) &&
@@ -364,7 +450,7 @@ public class Ast {
             }
 
             public Variable(Stdlib.Type type, String name) {
-                super(type);
+                super(type, Objects.hash("Variable", name));
                 this.name = name;
             }
 
@@ -374,7 +460,8 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Variable &&
+                return obj == this || obj instanceof Variable &&
+                        hashCode() == obj.hashCode() &&
                         name.equals(((Variable) obj).name) &&
                         Objects.equals(type, ((Variable) obj).type);
             }
@@ -399,7 +486,7 @@ public class Ast {
             }
 
             public Function(Stdlib.Type type, String name, List<Expression> arguments) {
-                super(type);
+                super(type, Objects.hash("Function", name, arguments));
                 this.name = name;
                 this.arguments = arguments;
             }
@@ -414,7 +501,8 @@ public class Ast {
 
             @Override
             public boolean equals(Object obj) {
-                return obj instanceof Function &&
+                return obj == this || obj instanceof Function &&
+                        hashCode() == obj.hashCode() &&
                         name.equals(((Function) obj).name) &&
                         arguments.equals(((Function) obj).arguments) &&
                         Objects.equals(type, ((Function) obj).type);
@@ -0,0 +1,131 @@
+package plc.compiler;
+
+import plc.interpreter.Span;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates hash-consed {@link Ast} nodes: every structurally equal subtree
+ * interned through the same factory is the same instance.
+ *
+ * Trees are interned bottom-up, so a node is only looked up once its
+ * children are canonical and the lookup compares them by identity. Canonical
+ * nodes can then be compared with {@code ==}, and repeated variables,
+ * literals and common subexpressions are stored once. Canonical nodes hold
+ * unmodifiable lists.
+ *
+ * A shared node has no single position in the source, so canonical nodes
+ * carry no spans: {@link Ast#getSpan()} is {@link Span#NONE} for every node
+ * of an interned tree. Diagnostics which need positions should use the tree
+ * produced by the parser.
+ *
+ * The factory is thread-safe and keeps every node it has interned, so it
+ * should be discarded along with the trees it produced.
+ */
+public final class AstFactory {
+
+    private final ConcurrentHashMap<Ast, Ast> nodes = new ConcurrentHashMap<>();
+    private final Interner interner = new Interner();
+
+    /**
+     * Returns the canonical instance of a tree structurally equal to the
+     * given one.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Ast> T intern(T ast) {
+        return (T) interner.visit(ast);
+    }
+
+    /**
+     * Returns the number of distinct nodes interned by this factory.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the canonical instance of a node whose children are already
+     * canonical, registering the node itself if it is new.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> T canonical(T ast) {
+        Ast existing = nodes.putIfAbsent(ast, ast);
+        return existing != null ? (T) existing : ast;
+    }
+
+    private <T extends Ast> List<T> intern(List<T> asts) {
+        List<T> canonical = new ArrayList<>(asts.size());
+        for (T ast : asts) {
+            canonical.add(intern(ast));
+        }
+        return Collections.unmodifiableList(canonical);
+    }
+
+    private final class Interner implements Ast.Visitor<Ast> {
+
+        @Override
+        public Ast visit(Ast.Source ast) {
+            return canonical(new Ast.Source(intern(ast.getStatements())));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Expression ast) {
+            return canonical(new Ast.Statement.Expression(intern(ast.getExpression())));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Declaration ast) {
+            Optional<Ast.Expression> value = ast.getValue().map(AstFactory.this::intern);
+            return canonical(new Ast.Statement.Declaration(ast.getName(), ast.getType(), value));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.Assignment ast) {
+            return canonical(new Ast.Statement.Assignment(ast.getName(), intern(ast.getExpression())));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.If ast) {
+            return canonical(new Ast.Statement.If(intern(ast.getCondition()),
+                    intern(ast.getThenStatements()), intern(ast.getElseStatements())));
+        }
+
+        @Override
+        public Ast visit(Ast.Statement.While ast) {
+            return canonical(new Ast.Statement.While(intern(ast.getCondition()),
+                    intern(ast.getStatements())));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Literal ast) {
+            return canonical(new Ast.Expression.Literal(ast.type, ast.getValue()));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Group ast) {
+            return canonical(new Ast.Expression.Group(ast.type, intern(ast.getExpression())));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Binary ast) {
+            return canonical(new Ast.Expression.Binary(ast.type, ast.getOperator(),
+                    intern(ast.getLeft()), intern(ast.getRight())));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Variable ast) {
+            return canonical(new Ast.Expression.Variable(ast.type, ast.getName()));
+        }
+
+        @Override
+        public Ast visit(Ast.Expression.Function ast) {
+            return canonical(new Ast.Expression.Function(ast.type, ast.getName(), intern(ast.getArguments())));
+        }
+
+    }
+
+}
@@ -0,0 +1,264 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles many independent sources at once, lexing, parsing, analyzing and
+ * generating each one as a separate task on a {@link ForkJoinPool}.
+ *
+ * Nothing mutable is shared between the tasks: each source gets its own
+ * token buffer, {@link Analyzer}, root {@link Scope} and {@link Generator},
+ * while the {@link Stdlib} registry and the parser's operator table are
+ * immutable snapshots that every thread reads without locking. The registry
+ * is captured once per batch, so every source in it is analyzed against the
+ * same types and functions even if more are registered meanwhile. Idle workers
+ * steal queued sources from busy ones, so a batch of many small programs
+ * keeps every thread busy. A source which fails to compile does not affect
+ * the others; its exception is recorded in its {@link Result}.
+ */
+public final class BatchCompiler {
+
+    private final ForkJoinPool pool;
+
+    public BatchCompiler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BatchCompiler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Compiles the sources, which are keyed by name. The results in the
+     * report are in the iteration order of the map.
+     */
+    public Report compile(Map<String, String> sources) {
+        Stdlib.Registry stdlib = Stdlib.snapshot();
+        List<Callable<Result>> tasks = new ArrayList<>(sources.size());
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            tasks.add(() -> compile(source.getKey(), source.getValue(), stdlib));
+        }
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>(tasks.size());
+        for (Future<Result> result : pool.invokeAll(tasks)) {
+            results.add(join(result));
+        }
+        return new Report(results, System.nanoTime() - start);
+    }
+
+    /**
+     * Compiles a single source, timing each phase. Statements are analyzed
+     * one at a time in the same root scope, like a {@link Pipeline}.
+     */
+    private static Result compile(String name, String source, Stdlib.Registry stdlib) {
+        long[] times = new long[4];
+        int phase = 0;
+        long start = System.nanoTime();
+        try {
+            TokenBuffer tokens = Lexer.lexBuffer(source);
+            start = lap(times, phase++, start);
+            Ast.Source ast = (Ast.Source) Parser.parse(tokens);
+            start = lap(times, phase++, start);
+            Analyzer analyzer = new Analyzer(new Scope(null), stdlib);
+            List<Ast.Statement> statements = new ArrayList<>(ast.getStatements().size());
+            for (Ast.Statement statement : ast.getStatements()) {
+                statements.add((Ast.Statement) analyzer.visit(statement));
+            }
+            start = lap(times, phase++, start);
+            StringWriter writer = new StringWriter();
+            new Generator(new PrintWriter(writer)).visit(new Ast.Source(statements));
+            lap(times, phase, start);
+            return new Result(name, source.length(), writer.toString(), null, times);
+        } catch (RuntimeException e) {
+            lap(times, phase, start);
+            return new Result(name, source.length(), null, e, times);
+        }
+    }
+
+    private static long lap(long[] times, int phase, long start) {
+        long end = System.nanoTime();
+        times[phase] = end - start;
+        return end;
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The outcome of compiling one source: either the generated code or the
+     * exception, along with the time spent in each phase (zero for phases
+     * after a failure).
+     */
+    public static final class Result {
+
+        private final String name;
+        private final int length;
+        private final String output;
+        private final RuntimeException exception;
+        private final long[] times;
+
+        private Result(String name, int length, String output, RuntimeException exception, long[] times) {
+            this.name = name;
+            this.length = length;
+            this.output = output;
+            this.exception = exception;
+            this.times = times;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of characters in the source.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        public boolean isSuccess() {
+            return exception == null;
+        }
+
+        /**
+         * Returns the generated code, or null if compilation failed.
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * Returns the exception compilation failed with, or null.
+         */
+        public RuntimeException getException() {
+            return exception;
+        }
+
+        public long getLexNanos() {
+            return times[0];
+        }
+
+        public long getParseNanos() {
+            return times[1];
+        }
+
+        public long getAnalyzeNanos() {
+            return times[2];
+        }
+
+        public long getGenerateNanos() {
+            return times[3];
+        }
+
+        public long getTotalNanos() {
+            return times[0] + times[1] + times[2] + times[3];
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "name='" + name + '\'' +
+                    ", success=" + isSuccess() +
+                    ", lexNanos=" + times[0] +
+                    ", parseNanos=" + times[1] +
+                    ", analyzeNanos=" + times[2] +
+                    ", generateNanos=" + times[3] +
+                    (exception != null ? ", exception=" + exception : "") +
+                    '}';
+        }
+
+    }
+
+    /**
+     * The results of a batch, along with its wall-clock time and throughput.
+     */
+    public static final class Report {
+
+        private final List<Result> results;
+        private final long elapsedNanos;
+
+        private Report(List<Result> results, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Result> getResults() {
+            return results;
+        }
+
+        public int getFailures() {
+            int failures = 0;
+            for (Result result : results) {
+                if (!result.isSuccess()) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+        /**
+         * Returns the wall-clock time of the whole batch.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the sum of the times of the sources, which exceeds the
+         * elapsed time when they were compiled in parallel.
+         */
+        public long getTotalNanos() {
+            long total = 0;
+            for (Result result : results) {
+                total += result.getTotalNanos();
+            }
+            return total;
+        }
+
+        public double getSourcesPerSecond() {
+            return results.size() * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        public double getCharactersPerSecond() {
+            long characters = 0;
+            for (Result result : results) {
+                characters += result.getLength();
+            }
+            return characters * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" +
+                    "sources=" + results.size() +
+                    ", failures=" + getFailures() +
+                    ", elapsedMillis=" + elapsedNanos / 1_000_000 +
+                    ", totalMillis=" + getTotalNanos() / 1_000_000 +
+                    ", sourcesPerSecond=" + String.format("%.1f", getSourcesPerSecond()) +
+                    ", charactersPerSecond=" + String.format("%.0f", getCharactersPerSecond()) +
+                    '}';
+        }
+
+    }
+
+}
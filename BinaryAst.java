@@ -0,0 +1,296 @@
+package plc.compiler;
+
+import plc.interpreter.BinaryFormat;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Encodes compiler ASTs in the {@link BinaryFormat}, so a program can be
+ * parsed (and analyzed) once and loaded quickly on later runs.
+ *
+ * Each node is written as a tag, its span and its names and counts, followed
+ * by its children in order. Expression types are written by name and resolved
+ * through {@link Stdlib#getType(String)} when decoding, so a decoded tree
+ * refers to the same {@link Stdlib.Type} instances as the original and
+ * compares equal to it.
+ */
+public final class BinaryAst {
+
+    static final int MAGIC = 0x504C4341; // "PLCA"
+
+    private static final int SOURCE = 0;
+    private static final int EXPRESSION_STATEMENT = 1;
+    private static final int DECLARATION = 2;
+    private static final int ASSIGNMENT = 3;
+    private static final int IF = 4;
+    private static final int WHILE = 5;
+    private static final int LITERAL = 6;
+    private static final int GROUP = 7;
+    private static final int BINARY = 8;
+    private static final int VARIABLE = 9;
+    private static final int FUNCTION = 10;
+
+    private BinaryAst() {}
+
+    public static byte[] encode(Ast ast) {
+        Encoder encoder = new Encoder();
+        encoder.visit(ast);
+        return encoder.writer.toByteArray();
+    }
+
+    /**
+     * Decodes a tree written by {@link #encode(Ast)}, throwing an {@link
+     * IllegalArgumentException} if the data is malformed or an {@link
+     * AnalysisException} if it refers to a type that is not registered.
+     */
+    public static Ast decode(ByteBuffer buffer) {
+        try {
+            BinaryFormat.Reader reader = new BinaryFormat.Reader(buffer, MAGIC);
+            Ast ast = new Decoder(reader).decode();
+            reader.finish();
+            return ast;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Malformed AST data.", e);
+        }
+    }
+
+    public static void write(Ast ast, Path path) throws IOException {
+        BinaryFormat.write(path, encode(ast));
+    }
+
+    /**
+     * Memory-maps the file and decodes the tree stored in it.
+     */
+    public static Ast read(Path path) throws IOException {
+        return decode(BinaryFormat.map(path));
+    }
+
+    private static final class Encoder implements Ast.Visitor<Void> {
+
+        private final BinaryFormat.Writer writer = new BinaryFormat.Writer(MAGIC);
+
+        @Override
+        public Void visit(Ast.Source ast) {
+            writer.node(SOURCE);
+            writer.span(ast.getSpan());
+            writer.varint(ast.getStatements().size());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Expression ast) {
+            writer.node(EXPRESSION_STATEMENT);
+            writer.span(ast.getSpan());
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Declaration ast) {
+            writer.node(DECLARATION);
+            writer.span(ast.getSpan());
+            writer.constant(ast.getName());
+            writer.constant(ast.getType());
+            writer.varint(ast.getValue().isPresent() ? 1 : 0);
+            ast.getValue().ifPresent(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.Assignment ast) {
+            writer.node(ASSIGNMENT);
+            writer.span(ast.getSpan());
+            writer.constant(ast.getName());
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.If ast) {
+            writer.node(IF);
+            writer.span(ast.getSpan());
+            writer.varint(ast.getThenStatements().size());
+            writer.varint(ast.getElseStatements().size());
+            visit(ast.getCondition());
+            ast.getThenStatements().forEach(this::visit);
+            ast.getElseStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Statement.While ast) {
+            writer.node(WHILE);
+            writer.span(ast.getSpan());
+            writer.varint(ast.getStatements().size());
+            visit(ast.getCondition());
+            ast.getStatements().forEach(this::visit);
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Literal ast) {
+            writer.node(LITERAL);
+            writer.span(ast.getSpan());
+            type(ast);
+            writer.constant(ast.getValue());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Group ast) {
+            writer.node(GROUP);
+            writer.span(ast.getSpan());
+            type(ast);
+            visit(ast.getExpression());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Binary ast) {
+            writer.node(BINARY);
+            writer.span(ast.getSpan());
+            type(ast);
+            writer.constant(ast.getOperator());
+            visit(ast.getLeft());
+            visit(ast.getRight());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Variable ast) {
+            writer.node(VARIABLE);
+            writer.span(ast.getSpan());
+            type(ast);
+            writer.constant(ast.getName());
+            return null;
+        }
+
+        @Override
+        public Void visit(Ast.Expression.Function ast) {
+            writer.node(FUNCTION);
+            writer.span(ast.getSpan());
+            type(ast);
+            writer.constant(ast.getName());
+            writer.varint(ast.getArguments().size());
+            ast.getArguments().forEach(this::visit);
+            return null;
+        }
+
+        private void type(Ast.Expression ast) {
+            writer.constantOrNull(ast.type != null ? ast.type.getName() : null);
+        }
+
+    }
+
+    private static final class Decoder {
+
+        private final BinaryFormat.Reader reader;
+
+        private Decoder(BinaryFormat.Reader reader) {
+            this.reader = reader;
+        }
+
+        private Ast decode() {
+            int tag = reader.tag();
+            long span = reader.span();
+            Ast ast = node(tag);
+            ast.setSpan(span);
+            return ast;
+        }
+
+        private Ast node(int tag) {
+            switch (tag) {
+                case SOURCE:
+                    return new Ast.Source(statements(reader.varint()));
+                case EXPRESSION_STATEMENT:
+                    return new Ast.Statement.Expression(expression());
+                case DECLARATION: {
+                    String name = reader.string();
+                    String type = reader.string();
+                    Optional<Ast.Expression> value = reader.varint() != 0 ? Optional.of(expression()) : Optional.empty();
+                    return new Ast.Statement.Declaration(name, type, value);
+                }
+                case ASSIGNMENT: {
+                    String name = reader.string();
+                    return new Ast.Statement.Assignment(name, expression());
+                }
+                case IF: {
+                    int thenCount = reader.varint();
+                    int elseCount = reader.varint();
+                    Ast.Expression condition = expression();
+                    List<Ast.Statement> thenStatements = statements(thenCount);
+                    return new Ast.Statement.If(condition, thenStatements, statements(elseCount));
+                }
+                case WHILE: {
+                    int count = reader.varint();
+                    Ast.Expression condition = expression();
+                    return new Ast.Statement.While(condition, statements(count));
+                }
+                case LITERAL: {
+                    Stdlib.Type type = type();
+                    return new Ast.Expression.Literal(type, reader.constant());
+                }
+                case GROUP: {
+                    Stdlib.Type type = type();
+                    return new Ast.Expression.Group(type, expression());
+                }
+                case BINARY: {
+                    Stdlib.Type type = type();
+                    String operator = reader.string();
+                    Ast.Expression left = expression();
+                    return new Ast.Expression.Binary(type, operator, left, expression());
+                }
+                case VARIABLE: {
+                    Stdlib.Type type = type();
+                    return new Ast.Expression.Variable(type, reader.string());
+                }
+                case FUNCTION: {
+                    Stdlib.Type type = type();
+                    String name = reader.string();
+                    int count = reader.varint();
+                    List<Ast.Expression> arguments = new ArrayList<>(Math.min(count, 1024));
+                    for (int i = 0; i < count; i++) {
+                        arguments.add(expression());
+                    }
+                    return new Ast.Expression.Function(type, name, arguments);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown node tag " + tag + ".");
+            }
+        }
+
+        private List<Ast.Statement> statements(int count) {
+            List<Ast.Statement> statements = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                statements.add((Ast.Statement) decode());
+            }
+            return statements;
+        }
+
+        private Ast.Expression expression() {
+            return (Ast.Expression) decode();
+        }
+
+        /**
+         * Resolves a type by name. {@link Stdlib.Type#VOID} is not registered
+         * since it cannot be declared, but it is the type of calls to
+         * functions such as {@code PRINT}.
+         */
+        private Stdlib.Type type() {
+            String name = (String) reader.constantOrNull();
+            if (name == null) {
+                return null;
+            }
+            return name.equals(Stdlib.Type.VOID.getName()) ? Stdlib.Type.VOID : Stdlib.getType(name);
+        }
+
+    }
+
+}
@@ -0,0 +1,266 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the result of lexing and parsing (and optionally analyzing) source
+ * text, so unchanged sources are not compiled again.
+ *
+ * Entries are content-addressed: the key is a SHA-256 hash of the source
+ * text, the stage, the parser's operator table and the {@link
+ * Stdlib.Registry#getVersion() version} of the stdlib snapshot the source is
+ * analyzed against, so an entry can never be stale. Trees are kept in a
+ * small in-memory LRU map and stored on disk in the {@link BinaryAst} format,
+ * one file per key. Files are written to a temporary file and atomically
+ * renamed into place, so processes sharing the directory only ever see
+ * complete entries. A disk hit updates the file's modification time, and
+ * when the directory grows past its limit the least recently used files are
+ * deleted.
+ *
+ * Analysis always starts from an empty root {@link Scope}, since a cached
+ * tree cannot replay the definitions analysis would make in a caller's scope.
+ */
+public final class CompilationCache {
+
+    private static final String EXTENSION = ".ast";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Map<String, Ast.Source> memory;
+    private final AtomicLong diskBytes;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache storing up to {@code maxBytes} of entries in the
+     * directory (which is created if needed) and keeping up to {@code
+     * memoryEntries} trees in memory.
+     */
+    public CompilationCache(Path directory, long maxBytes, int memoryEntries) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.memory = new LinkedHashMap<String, Ast.Source>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ast.Source> eldest) {
+                return size() > memoryEntries;
+            }
+
+        };
+        this.diskBytes = new AtomicLong(entries().stream().mapToLong(Entry::size).sum());
+    }
+
+    /**
+     * Returns the parsed AST of the source, like {@link Parser#parse(TokenBuffer)}.
+     */
+    public Ast.Source parse(String source) throws IOException, ParseException {
+        return get("parse", source);
+    }
+
+    /**
+     * Returns the analyzed AST of the source: a source of the statements of
+     * the parsed AST as returned by an {@link Analyzer} in an empty root
+     * scope.
+     */
+    public Ast.Source analyze(String source) throws IOException, ParseException, AnalysisException {
+        return get("analyze", source);
+    }
+
+    private Ast.Source get(String stage, String source) throws IOException {
+        Stdlib.Registry stdlib = Stdlib.snapshot();
+        String key = key(stage, source, stdlib);
+        synchronized (memory) {
+            Ast.Source ast = memory.get(key);
+            if (ast != null) {
+                memoryHits.incrementAndGet();
+                return ast;
+            }
+        }
+        Ast.Source ast = load(key);
+        if (ast != null) {
+            diskHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            ast = (Ast.Source) Parser.parse(Lexer.lexBuffer(source));
+            if (stage.equals("analyze")) {
+                ast = analyze(ast, stdlib);
+            }
+            store(key, ast);
+        }
+        synchronized (memory) {
+            memory.put(key, ast);
+        }
+        return ast;
+    }
+
+    /**
+     * Analyzes the statements of the source in an empty root scope and
+     * returns a source of the analyzed statements.
+     */
+    private static Ast.Source analyze(Ast.Source ast, Stdlib.Registry stdlib) throws AnalysisException {
+        Analyzer analyzer = new Analyzer(new Scope(null), stdlib);
+        List<Ast.Statement> statements = new ArrayList<>(ast.getStatements().size());
+        for (Ast.Statement statement : ast.getStatements()) {
+            statements.add((Ast.Statement) analyzer.visit(statement));
+        }
+        Ast.Source analyzed = new Ast.Source(statements);
+        analyzed.setSpan(ast.getSpan());
+        return analyzed;
+    }
+
+    /**
+     * Reads the entry from disk, returning null if there is none. Entries
+     * that cannot be decoded are deleted.
+     */
+    private Ast.Source load(String key) throws IOException {
+        Path path = directory.resolve(key + EXTENSION);
+        try {
+            Ast ast = BinaryAst.read(path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return (Ast.Source) ast;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IllegalArgumentException | ClassCastException e) {
+            Files.deleteIfExists(path);
+            return null;
+        }
+    }
+
+    private void store(String key, Ast.Source ast) throws IOException {
+        byte[] bytes = BinaryAst.encode(ast);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, directory.resolve(key + EXTENSION), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (diskBytes.addAndGet(bytes.length) > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the directory is within
+     * its limit. The directory is rescanned since other processes may have
+     * added or removed entries.
+     */
+    private synchronized void evict() throws IOException {
+        List<Entry> entries = entries();
+        entries.sort(Comparator.comparingLong(Entry::modified));
+        long total = entries.stream().mapToLong(Entry::size).sum();
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (Files.deleteIfExists(entry.path)) {
+                evictions.incrementAndGet();
+            }
+            total -= entry.size;
+        }
+        diskBytes.set(total);
+    }
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : stream) {
+                try {
+                    entries.add(new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (NoSuchFileException ignored) {
+                    // deleted by another process
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String key(String stage, String source, Stdlib.Registry stdlib) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((stage + "\n" + stdlib.getVersion() + "\n" + Parser.getOperators() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationCache{" +
+                "directory=" + directory +
+                ", memoryHits=" + memoryHits +
+                ", diskHits=" + diskHits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private final long size;
+        private final long modified;
+
+        private Entry(Path path, long size, long modified) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        private long size() {
+            return size;
+        }
+
+        private long modified() {
+            return modified;
+        }
+
+    }
+
+}
@@ -31,23 +31,43 @@ public final class Generator implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Source ast) {
 
+        printHeader();
+        for(int i = 0; i < ast.getStatements().size(); i++){
+            printStatement(ast.getStatements().get(i));
+        }
+        printFooter();
+
+        return null;
+    }
+
+    /**
+     * Prints the start of the class and main method, before any statements.
+     * Together with {@link #printStatement(Ast.Statement)} and {@link
+     * #printFooter()}, this lets a {@link Pipeline} generate statements as
+     * they arrive rather than visiting a whole {@link Ast.Source}.
+     */
+    void printHeader() {
         print("public final class Main {");
         newline(0);
         newline(1);
         print("public static void main(String[] args) {");
-        for(int i = 0; i < ast.getStatements().size(); i++){
-           newline(2);
-            visit(ast.getStatements().get(i));
-        }
+    }
+
+    /**
+     * Prints a top-level statement of the main method.
+     */
+    void printStatement(Ast.Statement ast) {
+        newline(2);
+        visit(ast);
+    }
+
+    void printFooter() {
         newline(1);
         print("}");
         newline(0);
         newline(0);
         print("}");
         newline(0);
-
-
-        return null;
     }
 
     @Override
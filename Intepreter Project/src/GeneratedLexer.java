@@ -0,0 +1,135 @@
+package plc.compiler;
+
+import plc.interpreter.Dfa;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lexer generated from a list of token rules, which are compiled into a
+ * single minimized {@link Dfa}.
+ *
+ * Each rule is a regex which either produces a token of its type, is skipped
+ * (for whitespace), or reports an error. At every position the longest match
+ * of any rule is taken, with ties going to the rule listed first, so the hand
+ * written decisions of {@link Lexer#lexToken()} become ordinary rules: for
+ * example, {@code "[0-9]+\\.[0-9]+"} as a DECIMAL followed by {@code
+ * "[0-9]+\\."} as an "Invalid Decimal" error. Lexing is then a single loop of
+ * table lookups that appends to a {@link TokenBuffer}, no matter how many
+ * rules there are.
+ */
+public final class GeneratedLexer {
+
+    private final String unmatched;
+    private final List<Rule> rules;
+    private final Dfa dfa;
+
+    /**
+     * Creates a lexer from the rules in priority order, where {@code
+     * unmatched} is the error message for characters no rule matches.
+     */
+    public GeneratedLexer(String unmatched, Rule... rules) {
+        this.unmatched = unmatched;
+        this.rules = Arrays.asList(rules);
+        this.dfa = Dfa.compile(this.rules.stream().map(Rule::getRegex).toArray(String[]::new));
+    }
+
+    /**
+     * Lexes the input into a {@link TokenBuffer}, throwing a {@link
+     * ParseException} at the end of the first match of an error rule or at the
+     * first character that no rule matches.
+     */
+    public TokenBuffer lex(String input) throws ParseException {
+        TokenBuffer buffer = new TokenBuffer(input, Math.max(16, input.length() / 4));
+        int index = 0;
+        while (index < input.length()) {
+            long match = dfa.scan(input, index);
+            if (match == -1) {
+                throw new ParseException(unmatched, index);
+            }
+            Rule rule = rules.get(Dfa.rule(match));
+            int end = Dfa.end(match);
+            if (rule.type != null) {
+                buffer.add(rule.type, index, end - index);
+            } else if (rule.error != null) {
+                throw new ParseException(rule.error, end);
+            }
+            index = end;
+        }
+        return buffer;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public Dfa getDfa() {
+        return dfa;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratedLexer{" +
+                "unmatched='" + unmatched + '\'' +
+                ", rules=" + rules +
+                ", dfa=" + dfa +
+                '}';
+    }
+
+    public static final class Rule {
+
+        private final String regex;
+        private final Token.Type type;
+        private final String error;
+
+        private Rule(String regex, Token.Type type, String error) {
+            this.regex = regex;
+            this.type = type;
+            this.error = error;
+        }
+
+        /**
+         * A rule which produces a token of the given type.
+         */
+        public static Rule token(Token.Type type, String regex) {
+            return new Rule(regex, type, null);
+        }
+
+        /**
+         * A rule whose matches are skipped, such as whitespace.
+         */
+        public static Rule skip(String regex) {
+            return new Rule(regex, null, null);
+        }
+
+        /**
+         * A rule whose matches throw a {@link ParseException} with the message.
+         */
+        public static Rule error(String message, String regex) {
+            return new Rule(regex, null, message);
+        }
+
+        public String getRegex() {
+            return regex;
+        }
+
+        public Token.Type getType() {
+            return type;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Rule{" +
+                    "regex='" + regex + '\'' +
+                    ", type=" + type +
+                    ", error='" + error + '\'' +
+                    '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package plc.compiler;
+
+/**
+ * The reserved words of the language. Keywords are lexed as {@link
+ * Token.Type#IDENTIFIER} tokens, but the lexer also records which keyword (if
+ * any) each identifier is so the parser can dispatch on it directly instead of
+ * comparing literals.
+ *
+ * Recognition uses a perfect hash of the first character, last character and
+ * length: every keyword lands in its own slot of a 16-entry table, so a lookup
+ * is one hash and at most one comparison.
+ */
+public enum Keyword {
+
+    LET,
+    IF,
+    ELSE,
+    WHILE,
+    THEN,
+    DO,
+    END,
+    TRUE,
+    FALSE;
+
+    private static final Keyword[] TABLE = new Keyword[16];
+
+    static {
+        for (Keyword keyword : values()) {
+            int hash = hash(keyword.name(), 0, keyword.name().length());
+            if (TABLE[hash] != null) {
+                throw new AssertionError("Keywords " + TABLE[hash] + " and " + keyword + " collide.");
+            }
+            TABLE[hash] = keyword;
+        }
+    }
+
+    private static int hash(CharSequence source, int start, int length) {
+        return (source.charAt(start) + source.charAt(start + length - 1) + (length << 2)) & 15;
+    }
+
+    /**
+     * Returns the keyword spelled by the given characters of the source, or
+     * {@code null} if they are not a keyword.
+     */
+    public static Keyword of(CharSequence source, int start, int length) {
+        if (length < 2 || length > 5) {
+            return null;
+        }
+        Keyword keyword = TABLE[hash(source, start, length)];
+        if (keyword == null || keyword.name().length() != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != keyword.name().charAt(i)) {
+                return null;
+            }
+        }
+        return keyword;
+    }
+
+    /**
+     * Returns the keyword spelled by the literal, or {@code null}.
+     */
+    public static Keyword of(String literal) {
+        return of(literal, 0, literal.length());
+    }
+
+}
@@ -1,7 +1,20 @@
 package plc.compiler;
 
+import plc.interpreter.CharClass;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The lexer works through three main functions:
@@ -18,10 +31,46 @@ import java.util.List;
  */
 public final class Lexer {
 
+    static final int PARALLEL_CHUNK_SIZE = 1 << 20;
+
+    private static final CharClass QUOTE = CharClass.of("\"");
+    private static final CharClass IDENTIFIER_START = CharClass.of("[A-Za-z_]");
+    private static final CharClass IDENTIFIER_PART = CharClass.of("[A-Za-z0-9_]");
+    private static final CharClass DIGIT = CharClass.of("[0-9]");
+    private static final CharClass NUMBER_PART = CharClass.of("[0-9.]");
+    private static final CharClass STRING_CHARACTER = CharClass.of("([a-zA-Z]|[^\\\\\\\"])");
+    private static final CharClass BACKSLASH = CharClass.of("(\\\\)");
+    private static final CharClass ESCAPE = CharClass.of("[^\\\"]");
+    private static final CharClass STRING_END = CharClass.of("[\\\\\"]{1}");
+    private static final CharClass OPERATOR = CharClass.of("[^!=]\\S*");
+    private static final CharClass EQUALITY = CharClass.of("[!=]");
+    private static final CharClass EQUALS = CharClass.of("[=]");
+
+    /**
+     * The rules of this lexer for {@link #lexGenerated(String)}. They accept
+     * the same tokens as {@link #lexToken()}, but as a lexer generated by the
+     * longest match rather than hand written.
+     */
+    static final GeneratedLexer GENERATED = new GeneratedLexer("Invalid Operator",
+            GeneratedLexer.Rule.skip("[ \\t\\n\\r\\f]+"),
+            GeneratedLexer.Rule.token(Token.Type.IDENTIFIER, "[A-Za-z_][A-Za-z0-9_]*"),
+            GeneratedLexer.Rule.token(Token.Type.INTEGER, "[0-9]+"),
+            GeneratedLexer.Rule.token(Token.Type.DECIMAL, "[0-9]+\\.[0-9]+"),
+            GeneratedLexer.Rule.error("Invalid Decimal", "[0-9]+\\."),
+            GeneratedLexer.Rule.token(Token.Type.STRING, "\"([^\\\\\"]|\\\\[^\"])*\""),
+            GeneratedLexer.Rule.error("Invalid Sequence", "\"([^\\\\\"]|\\\\[^\"])*\\\\"),
+            GeneratedLexer.Rule.error("Unterminated String", "\"([^\\\\\"]|\\\\[^\"])*"),
+            GeneratedLexer.Rule.token(Token.Type.OPERATOR, "[!=]=?|[^!=]")
+    );
+
     final CharStream chars;
 
     Lexer(String input) {
-        chars = new CharStream(input);
+        this(new StringCharStream(input));
+    }
+
+    Lexer(CharStream chars) {
+        this.chars = chars;
     }
 
     /**
@@ -31,40 +80,248 @@ public final class Lexer {
         return new Lexer(input).lex();
     }
 
+    /**
+     * Lexes the input into a {@link TokenBuffer}. No {@link Token} objects or
+     * literal strings are created; the buffer refers back to the input.
+     */
+    public static TokenBuffer lexBuffer(String input) throws ParseException {
+        Lexer lexer = new Lexer(input);
+        lexer.chars.sink = new TokenBuffer(input, Math.max(16, input.length() / 4));
+        while (lexer.skipWhitespace()) {
+            lexer.lexToken();
+        }
+        return lexer.chars.sink;
+    }
+
+    /**
+     * Lexes the input into a {@link TokenBuffer} with the generated lexer
+     * instead of {@link #lexToken()}; see {@link GeneratedLexer}. The tokens
+     * are the same as {@link #lexBuffer(String)} for any valid input.
+     */
+    public static TokenBuffer lexGenerated(String input) throws ParseException {
+        return GENERATED.lex(input);
+    }
+
+    /**
+     * Lexes the input into a {@link TokenBuffer} using all of the threads of
+     * the common {@link ForkJoinPool}. See {@link #lexParallel(String,
+     * ForkJoinPool, int)}.
+     */
+    public static TokenBuffer lexParallel(String input) throws ParseException {
+        return lexParallel(input, ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE);
+    }
+
+    /**
+     * Lexes the input into a {@link TokenBuffer} by splitting it into chunks of
+     * roughly {@code chunkSize} characters and lexing the chunks in parallel.
+     *
+     * Chunks are only split at whitespace outside of string literals, which is
+     * always a token boundary. Strings cannot contain an unescaped quote, so
+     * whether a position is inside a string is the parity of the quotes before
+     * it; the quotes in each chunk are counted in parallel first. Each chunk is
+     * lexed over the whole input starting at its own offset, so token indices
+     * are already absolute and the chunk buffers are simply concatenated. The
+     * result is identical to {@link #lexBuffer(String)}, and if lexing fails
+     * the exception from the earliest chunk is thrown, which is the same one
+     * the sequential lexer would have reached.
+     */
+    public static TokenBuffer lexParallel(String input, ForkJoinPool pool, int chunkSize) throws ParseException {
+        int chunks = (input.length() + chunkSize - 1) / chunkSize;
+        if (chunks <= 1) {
+            return lexBuffer(input);
+        }
+        List<Callable<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int start = i * chunkSize;
+            int end = Math.min(start + chunkSize, input.length());
+            counts.add(() -> countQuotes(input, start, end));
+        }
+        List<Future<Integer>> quotes = pool.invokeAll(counts);
+        int[] bounds = new int[chunks + 1];
+        bounds[chunks] = input.length();
+        boolean inString = false;
+        for (int i = 1; i < chunks; i++) {
+            inString ^= (join(quotes.get(i - 1)) & 1) == 1;
+            bounds[i] = Math.max(bounds[i - 1], split(input, i * chunkSize, inString));
+        }
+        List<Callable<TokenBuffer>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            if (start < end) {
+                tasks.add(() -> lexRange(input, start, end));
+            }
+        }
+        List<TokenBuffer> buffers = new ArrayList<>();
+        for (Future<TokenBuffer> buffer : pool.invokeAll(tasks)) {
+            buffers.add(join(buffer));
+        }
+        return TokenBuffer.concat(input, buffers);
+    }
+
+    /**
+     * Lexes the tokens which start in the range of the input.
+     */
+    private static TokenBuffer lexRange(String input, int start, int end) throws ParseException {
+        Lexer lexer = new Lexer(input);
+        lexer.chars.index = start;
+        lexer.chars.sink = new TokenBuffer(input, Math.max(16, (end - start) / 4));
+        while (lexer.skipWhitespace() && lexer.chars.index < end) {
+            lexer.lexToken();
+        }
+        return lexer.chars.sink;
+    }
+
+    private static int countQuotes(String input, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the first whitespace character outside of a string at or after
+     * the given index, or the length of the input if there is none.
+     */
+    private static int split(String input, int index, boolean inString) {
+        for (int i = index; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '"') {
+                inString = !inString;
+            } else if (!inString && (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f')) {
+                return i;
+            }
+        }
+        return input.length();
+    }
+
+    /**
+     * Waits for the result of a task, rethrowing any exception it threw.
+     */
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Re-lexes a buffer after an edit which replaced {@code removed}
+     * characters at {@code offset} with {@code inserted}.
+     *
+     * Lexing restarts at the first token touching the edit, since an edit at
+     * the end of a token may extend it. Once the lexer is past the inserted
+     * text and reaches a position where the previous buffer also started a
+     * token, the rest of the input is unchanged and would lex identically, so
+     * the remaining tokens are reused with their indices shifted. The amount
+     * of lexing therefore depends on the size of the edit, not of the file.
+     */
+    public static TokenBuffer relex(TokenBuffer previous, int offset, int removed, String inserted) throws ParseException {
+        CharSequence old = previous.getSource();
+        String source = new StringBuilder(old.length() - removed + inserted.length())
+                .append(old, 0, offset)
+                .append(inserted)
+                .append(old, offset + removed, old.length())
+                .toString();
+        int delta = inserted.length() - removed;
+        int first = previous.findEnd(offset);
+        Lexer lexer = new Lexer(source);
+        lexer.chars.index = first < previous.size() ? Math.min(previous.getStart(first), offset) : offset;
+        lexer.chars.sink = new TokenBuffer(source, 16, previous.getSymbols());
+        int resume = previous.size();
+        while (lexer.skipWhitespace()) {
+            if (lexer.chars.index >= offset + inserted.length()) {
+                int match = previous.findStart(lexer.chars.index - delta, first);
+                if (match != -1) {
+                    resume = match;
+                    break;
+                }
+            }
+            lexer.lexToken();
+        }
+        return previous.splice(source, first, lexer.chars.sink, resume, delta);
+    }
+
+    /**
+     * Returns a {@link TokenSource} that lexes tokens from the reader on
+     * demand. Only a fixed-size window of the input is held in memory, and the
+     * first token is available as soon as its characters have been read.
+     */
+    public static TokenSource stream(Reader reader) {
+        return new LexerSource(new Lexer(new ReaderCharStream(reader)));
+    }
+
+    /**
+     * Returns a {@link TokenSource} over a UTF-8 encoded channel, as with
+     * {@link #stream(Reader)}.
+     */
+    public static TokenSource stream(ReadableByteChannel channel) {
+        return stream(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    /**
+     * Lexes the file at the given path, which is memory-mapped rather than
+     * read into a string first. See {@link MappedCharStream}.
+     */
+    public static List<Token> lex(Path path) throws IOException, ParseException {
+        return new Lexer(MappedCharStream.map(path)).lex();
+    }
+
+    /**
+     * Returns a {@link TokenSource} over the memory-mapped file at the given
+     * path, as with {@link #lex(Path)}.
+     */
+    public static TokenSource stream(Path path) throws IOException {
+        return new LexerSource(new Lexer(MappedCharStream.map(path)));
+    }
+
     /**
      * Repeatedly lexes the next token using {@link #lexToken()} until the end
      * of the input is reached, returning the list of tokens lexed. This should
      * also handle skipping whitespace.
      */
     List<Token> lex() throws ParseException {
-        List<plc.compiler.Token> result = new ArrayList<plc.compiler.Token>();
-        while(chars.index != chars.input.length()){
-            if(chars.get(0) == ' ' ){
-                chars.advance();
-                chars.skip();
-            }else if(chars.get(0) == '\t' ){
-                chars.advance();
-                chars.skip();
-            }
-            else if(chars.get(0) == '\n' ){
-                chars.advance();
-                chars.skip();
-            }
-            else if(chars.get(0) == '\r' ){
-                chars.advance();
-                chars.skip();
-            }else if(chars.get(0) == '\f' ){
+        List<Token> result = new ArrayList<>();
+        Token token;
+        while ((token = lexNext()) != null) {
+            result.add(token);
+        }
+        return result;
+    }
+
+    /**
+     * Skips any whitespace and lexes the next token, returning {@code null}
+     * once the end of the input is reached. This is what {@link #lex()} and
+     * the streaming {@link TokenSource} are built on.
+     */
+    Token lexNext() throws ParseException {
+        return skipWhitespace() ? lexToken() : null;
+    }
+
+    /**
+     * Skips any whitespace, returning true if there is another token to lex.
+     */
+    boolean skipWhitespace() {
+        while (chars.has(0)) {
+            char c = chars.get(0);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
                 chars.advance();
                 chars.skip();
-            }
-            else if(chars.get(0) == ' ' && chars.input.length() == 1){
-                return result;
-            }else {
-                plc.compiler.Token temp = lexToken();
-                result.add(temp);
+            } else {
+                return true;
             }
         }
-        return result;
+        return false;
     }
 
     /**
@@ -105,9 +362,9 @@ public final class Lexer {
      */
     Token lexToken() throws ParseException {
         Token token;
-        if(peek("[A-Za-z_]")){
+        if(peek(IDENTIFIER_START)){
             token = lexIdentifier();
-        }else if(peek("[0-9]")){
+        }else if(peek(DIGIT)){
             token = lexNumber();
         }else if(chars.get(0) == '\"'){
             token = lexString();
@@ -123,8 +380,8 @@ public final class Lexer {
      * are allowed in identifiers.
      */
     Token lexIdentifier() throws ParseException {
-        if(peek("[A-Za-z_]")){
-            while(match("[A-Za-z0-9_]")){
+        if(peek(IDENTIFIER_START)){
+            while(match(IDENTIFIER_PART)){
 
             }
             return chars.emit(Token.Type.IDENTIFIER);
@@ -141,8 +398,8 @@ public final class Lexer {
     Token lexNumber() throws ParseException {
         int count = 0; // keeps track of the number of periods
         int digitsAfterDecimal = 0; //keeps track of the number of digits after the period
-        if(peek("[0-9]")){
-            while (peek("[0-9.]")) {
+        if(peek(DIGIT)){
+            while (peek(NUMBER_PART)) {
                 if(count == 1){ // increase the count of digits after decimal
                     digitsAfterDecimal++;
                 }
@@ -153,7 +410,7 @@ public final class Lexer {
                 if(count > 1){ //if there is more than one period
                     return chars.emit(Token.Type.DECIMAL);
                 }
-                if(peek("[0-9.]")){
+                if(peek(NUMBER_PART)){
                     chars.advance();
                 }
             }
@@ -173,19 +430,19 @@ public final class Lexer {
      */
     Token lexString() throws ParseException {
 
-        if (match("\""))  {
+        if (match(QUOTE))  {
             //exception
             while (true) {
-                if(match("([a-zA-Z]|[^\\\\\\\"])")) {
+                if(match(STRING_CHARACTER)) {
                     continue;
-                } else if (match("(\\\\)")) {
-                    if (match("[^\\\"]")) {
+                } else if (match(BACKSLASH)) {
+                    if (match(ESCAPE)) {
                         continue;
                     }
                     else{
                         throw new ParseException("Invalid Sequence", chars.index);
                     }
-                } else if(match("[\\\\\"]{1}")) {
+                } else if(match(STRING_END)) {
                     break;
                 } else {
                     throw new ParseException("Unterminated String", chars.index);
@@ -209,12 +466,12 @@ public final class Lexer {
      */
     Token lexOperator() throws ParseException {
 
-        if (match("[^!=]\\S*")) {
+        if (match(OPERATOR)) {
             return chars.emit(Token.Type.OPERATOR);
         }
-        else if (match("[!=]")){
-            if (peek("[=]")){
-                match("[=]");
+        else if (match(EQUALITY)){
+            if (peek(EQUALS)){
+                match(EQUALS);
             }
             return chars.emit(Token.Type.OPERATOR);
         }
@@ -230,13 +487,22 @@ public final class Lexer {
      */
     boolean peek(String... patterns) {
         for (int i = 0; i < patterns.length; i++) {
-            if (!chars.has(i) || !String.valueOf(chars.get(i)).matches(patterns[i])) {
+            if (!chars.has(i) || !CharClass.of(patterns[i]).contains(chars.get(i))) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Returns true if the next character is a member of the given class. This
+     * is the allocation-free version of {@link #peek(String...)} used by the
+     * lexing methods, which keep their classes as constants.
+     */
+    boolean peek(CharClass charClass) {
+        return chars.has(0) && charClass.contains(chars.get(0));
+    }
+
     /**
      * Returns true in the same way as peek, but also advances the CharStream too
      * if the characters matched.
@@ -251,36 +517,50 @@ public final class Lexer {
         return peek;
     }
 
+    /**
+     * Returns true in the same way as {@link #peek(CharClass)}, but also
+     * advances the CharStream if the character matched.
+     */
+    boolean match(CharClass charClass) {
+        boolean peek = peek(charClass);
+        if (peek) {
+            chars.advance();
+        }
+        return peek;
+    }
+
     /**
      * This is basically a sequence of characters. The index is used to maintain
-     * where in the input string the lexer currently is, and the builder
-     * accumulates characters into the literal value for the next token.
+     * where in the input the lexer currently is, and the length tracks how many
+     * characters belong to the literal of the next token.
+     *
+     * Subclasses decide where the characters come from; {@link
+     * StringCharStream} reads from a string held in memory, {@link
+     * ReaderCharStream} pulls them through a sliding window, and {@link
+     * MappedCharStream} reads directly from a memory-mapped file.
      */
-    public static final class CharStream {
+    public static abstract class CharStream {
 
-        final String input;
         int index = 0;
         int length = 0;
-
-        CharStream(String input) {
-            this.input = input;
-        }
+        TokenBuffer sink;
 
         /**
-         * Returns true if there is a character at index + offset, as defined by
-         * the length of the input.
+         * Returns true if there is a character at index + offset.
          */
-        public boolean has(int offset) {
-            return index + offset < input.length();
-        }
+        public abstract boolean has(int offset);
 
         /**
          * Gets the character at index + offset, throwing an exception if the
          * character does not exist.
          */
-        public char get(int offset) {
-            return input.charAt(index + offset); //throws if out of bounds
-        }
+        public abstract char get(int offset);
+
+        /**
+         * Returns the characters between the given absolute indices. Only the
+         * literal currently being built is guaranteed to be available.
+         */
+        abstract String substring(int start, int end);
 
         /**
          * Advances to the next character, incrementing the current index and
@@ -301,12 +581,83 @@ public final class Lexer {
         /**
          * Returns a token of the given type with the built literal. The index
          * of the token should be the starting index.
+         *
+         * If the stream is lexing into a {@link TokenBuffer}, the token is
+         * appended to the buffer instead and {@code null} is returned.
          */
         public Token emit(Token.Type type) {
             int start = index - length;
             skip(); //we've saved the starting point already
-            return new Token(type, input.substring(start, index), start);
+            if (sink != null) {
+                sink.add(type, start, index - start);
+                return null;
+            }
+            return new Token(type, substring(start, index), start);
+        }
+
+    }
+
+    /**
+     * A {@link CharStream} over an input string held entirely in memory.
+     */
+    public static final class StringCharStream extends CharStream {
+
+        final String input;
+
+        StringCharStream(String input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return index + offset < input.length();
+        }
+
+        @Override
+        public char get(int offset) {
+            return input.charAt(index + offset); //throws if out of bounds
+        }
+
+        @Override
+        String substring(int start, int end) {
+            return input.substring(start, end);
+        }
+
+    }
+
+    /**
+     * Adapts a lexer to the pull-based {@link TokenSource} interface, lexing
+     * one token ahead of the consumer.
+     */
+    private static final class LexerSource implements TokenSource {
+
+        private final Lexer lexer;
+        private Token next;
+        private boolean done = false;
+
+        private LexerSource(Lexer lexer) {
+            this.lexer = lexer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = lexer.lexNext();
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Token next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Token token = next;
+            next = null;
+            return token;
         }
 
     }
+
 }
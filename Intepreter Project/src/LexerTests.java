@@ -1,11 +1,22 @@
 package plc.compiler;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import plc.interpreter.CharClass;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -97,6 +108,228 @@ final class LexerTests {
     }
 
 
+    @ParameterizedTest
+    @MethodSource
+    void testCharClass(String test, String regex, char c, boolean matches) {
+        Assertions.assertEquals(matches, CharClass.of(regex).contains(c));
+        Assertions.assertEquals(String.valueOf(c).matches(regex), CharClass.of(regex).contains(c));
+    }
+
+    private static Stream<Arguments> testCharClass() {
+        return Stream.of(
+                Arguments.of("Range Member", "[A-Za-z_]", 'q', true),
+                Arguments.of("Range Non-Member", "[A-Za-z_]", '7', false),
+                Arguments.of("Negated Class", "[^!=]\\S*", '(', true),
+                Arguments.of("Negated Class Excluded", "[^!=]\\S*", '=', false),
+                Arguments.of("Upper ASCII", "[~]", '~', true),
+                Arguments.of("Non-ASCII Fallback", "[^\\\\\"]", '\u00e9', true),
+                Arguments.of("Non-ASCII Excluded", "[A-Za-z]", '\u00e9', false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testStream(String test, String input) {
+        List<Token> expected = Lexer.lex(input);
+        Assertions.assertEquals(expected, Lexer.stream(new StringReader(input)).stream().collect(Collectors.toList()));
+        Assertions.assertEquals(expected, new Lexer(new ReaderCharStream(new StringReader(input), 2)).lex());
+    }
+
+    private static Stream<Arguments> testStream() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Whitespace", " \t\n "),
+                Arguments.of("Statement", "LET x : INTEGER = 10;"),
+                Arguments.of("Token Longer Than Buffer", "PRINT(\"a long string literal\", identifier_name, 12345.678);")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testStream")
+    void testBuffer(String test, String input) {
+        List<Token> expected = Lexer.lex(input);
+        TokenBuffer buffer = Lexer.lexBuffer(input);
+        Assertions.assertEquals(expected, buffer.toList());
+        for (int i = 0; i < buffer.size(); i++) {
+            Assertions.assertTrue(buffer.literalEquals(i, expected.get(i).getLiteral()));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testKeyword(String input, Keyword expected) {
+        Assertions.assertEquals(expected, Keyword.of(input));
+        Assertions.assertEquals(expected, Lexer.lexBuffer(input).getKeyword(0));
+    }
+
+    private static Stream<Arguments> testKeyword() {
+        return Stream.of(
+                Arguments.of("LET", Keyword.LET),
+                Arguments.of("WHILE", Keyword.WHILE),
+                Arguments.of("FALSE", Keyword.FALSE),
+                Arguments.of("let", null),
+                Arguments.of("LETTER", null),
+                Arguments.of("EN", null),
+                Arguments.of("name", null)
+        );
+    }
+
+    @Test
+    void testInterning() {
+        TokenBuffer buffer = Lexer.lexBuffer("name = name + PRINT(name);");
+        Assertions.assertSame(buffer.getLiteral(0), buffer.getLiteral(2));
+        Assertions.assertSame(buffer.getLiteral(0), buffer.getLiteral(6));
+        Assertions.assertSame("PRINT", buffer.getLiteral(4));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testRelex(String test, String input, int offset, int removed, String inserted) {
+        String edited = input.substring(0, offset) + inserted + input.substring(offset + removed);
+        TokenBuffer buffer = Lexer.relex(Lexer.lexBuffer(input), offset, removed, inserted);
+        Assertions.assertEquals(Lexer.lex(edited), buffer.toList());
+    }
+
+    private static Stream<Arguments> testRelex() {
+        String input = "LET x : INTEGER = 10; PRINT(x != 2);";
+        return Stream.of(
+                Arguments.of("Insert Within Identifier", input, 5, 0, "yz"),
+                Arguments.of("Extend Token End", input, 20, 0, "5"),
+                Arguments.of("Replace Token", input, 18, 2, "\"ten\""),
+                Arguments.of("Merge Tokens", input, 3, 1, ""),
+                Arguments.of("Split Token", input, 10, 0, " "),
+                Arguments.of("Delete Everything", input, 0, input.length(), ""),
+                Arguments.of("Append", input, input.length(), 0, " PRINT(y);"),
+                Arguments.of("Insert Tokens", input, 22, 0, "PRINT(\"a\"); ")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testGenerated(String test, String input) {
+        Assertions.assertEquals(Lexer.lex(input), Lexer.lexGenerated(input).toList());
+    }
+
+    private static Stream<Arguments> testGenerated() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Statement", "LET x : INTEGER = 10;"),
+                Arguments.of("Equality", "IF x == y != z = !w THEN"),
+                Arguments.of("Numbers", "0 007.000 1.2.3"),
+                Arguments.of("Escapes", "PRINT(\"tab\\tand\\\\backslash\", 1);")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testGeneratedError(String test, String input) {
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> Lexer.lex(input));
+        ParseException actual = Assertions.assertThrows(ParseException.class, () -> Lexer.lexGenerated(input));
+        Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        Assertions.assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+    private static Stream<Arguments> testGeneratedError() {
+        return Stream.of(
+                Arguments.of("Invalid Decimal", "x = 1.;"),
+                Arguments.of("Invalid Sequence", "\"escaped\\\"quote\""),
+                Arguments.of("Unterminated String", "PRINT(\"unterminated")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("testStream")
+    void testParallel(String test, String input) {
+        Assertions.assertEquals(Lexer.lex(input), Lexer.lexParallel(input, ForkJoinPool.commonPool(), 4).toList());
+    }
+
+    @Test
+    void testParallelError() {
+        String input = "PRINT(\"a b\"); x = 1.; y = \"unterminated";
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> Lexer.lex(input));
+        ParseException actual = Assertions.assertThrows(ParseException.class,
+                () -> Lexer.lexParallel(input, ForkJoinPool.commonPool(), 4));
+        Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        Assertions.assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testStream")
+    void testMapped(String test, String input) throws IOException {
+        Path path = Files.createTempFile("lexer", ".src");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals(Lexer.lex(input), Lexer.lex(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testMappedNonAscii(String test, String input) throws IOException {
+        Path path = Files.createTempFile("lexer", ".src");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            MappedCharStream chars = MappedCharStream.map(path);
+            Assertions.assertEquals(Lexer.lex(input), new Lexer(chars).lex());
+            Assertions.assertFalse(chars.isAscii());
+            Assertions.assertEquals(Lexer.lex(input), Lexer.lex(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static Stream<Arguments> testMappedNonAscii() {
+        StringBuilder edge = new StringBuilder("\"\u00e9");
+        for (int i = 0; i < ReaderCharStream.DEFAULT_BUFFER_SIZE - 3; i++) {
+            edge.append('a');
+        }
+        return Stream.of(
+                Arguments.of("Accents", "PRINT(\"caf\u00e9 cr\u00e8me\", x);"),
+                Arguments.of("Surrogate Pair At Buffer Edge", edge.append("\ud83d\ude00\"").toString())
+        );
+    }
+
+    @Test
+    void testRingBuffer() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        Assertions.assertEquals(4, buffer.capacity());
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100000; i++) {
+                buffer.put(i);
+            }
+            buffer.fail(new ParseException("Failed", 100000));
+        });
+        producer.start();
+        for (int i = 0; i < 100000; i++) {
+            Assertions.assertEquals(i, (int) buffer.next());
+        }
+        ParseException exception = Assertions.assertThrows(ParseException.class, buffer::hasNext);
+        Assertions.assertEquals(100000, exception.getIndex());
+        producer.join();
+    }
+
+    @Test
+    void testRingBufferClose() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1);
+        Throwable[] thrown = new Throwable[1];
+        Thread producer = new Thread(() -> {
+            try {
+                while (true) {
+                    buffer.put(0);
+                }
+            } catch (RuntimeException e) {
+                thrown[0] = e;
+            }
+        });
+        producer.start();
+        Assertions.assertEquals(0, (int) buffer.next());
+        buffer.close();
+        producer.join();
+        Assertions.assertTrue(thrown[0] instanceof CancellationException);
+    }
+
     /**
      * Tests that the input lexes to the (single) expected token if successful,
      * else throws a {@link ParseException} otherwise.
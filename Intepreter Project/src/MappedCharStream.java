@@ -0,0 +1,178 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link Lexer.CharStream} over a memory-mapped UTF-8 file.
+ *
+ * As long as the file is ASCII, each byte is exactly one character and the
+ * lexer reads straight from the mapped bytes with no decoding and no copy. The
+ * bytes are verified lazily as the lexer reaches them; on the first non-ASCII
+ * byte the stream switches to decoding the rest of the file incrementally
+ * through a {@link ReaderCharStream}, starting from the literal currently
+ * being built so that token indices stay the same.
+ */
+public final class MappedCharStream extends Lexer.CharStream {
+
+    private final ByteBuffer bytes;
+    private final int size;
+    private int ascii = 0; //bytes before this position are known to be ASCII
+    private ReaderCharStream decoded;
+
+    MappedCharStream(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.size = bytes.limit();
+    }
+
+    /**
+     * Maps the file at the given path. The mapping stays valid after the
+     * channel is closed and is released once the stream is garbage collected.
+     */
+    public static MappedCharStream map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is too large to be mapped.");
+            }
+            return new MappedCharStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns true if the stream is still reading directly from the mapped
+     * bytes, meaning no non-ASCII bytes have been reached yet.
+     */
+    public boolean isAscii() {
+        return decoded == null;
+    }
+
+    @Override
+    public boolean has(int offset) {
+        if (check(index + offset)) {
+            return index + offset < size;
+        }
+        return sync().has(offset);
+    }
+
+    @Override
+    public char get(int offset) {
+        if (check(index + offset)) {
+            if (index + offset >= size) {
+                throw new IndexOutOfBoundsException("No character at index " + (index + offset) + ".");
+            }
+            return (char) bytes.get(index + offset);
+        }
+        return sync().get(offset);
+    }
+
+    @Override
+    String substring(int start, int end) {
+        if (decoded == null) {
+            char[] literal = new char[end - start];
+            for (int i = 0; i < literal.length; i++) {
+                literal[i] = (char) bytes.get(start + i);
+            }
+            return new String(literal);
+        }
+        return sync().substring(start, end);
+    }
+
+    /**
+     * Verifies bytes up to the given position are ASCII, returning false if
+     * the stream has switched (or now switches) to decoding.
+     */
+    private boolean check(int position) {
+        while (decoded == null && ascii <= position && ascii < size) {
+            if (bytes.get(ascii) < 0) {
+                int start = index - length;
+                ByteBuffer remaining = bytes.duplicate();
+                remaining.position(start);
+                decoded = new ReaderCharStream(new DecodingReader(remaining),
+                        ReaderCharStream.DEFAULT_BUFFER_SIZE, start);
+            } else {
+                ascii++;
+            }
+        }
+        return decoded == null;
+    }
+
+    /**
+     * Copies the lexer state onto the decoding stream before delegating.
+     */
+    private ReaderCharStream sync() {
+        decoded.index = index;
+        decoded.length = length;
+        return decoded;
+    }
+
+    /**
+     * Decodes UTF-8 from a byte buffer on demand, without copying the bytes.
+     *
+     * A supplementary character decodes to a surrogate pair, which doesn't
+     * fit if the caller has room for a single character. It is then decoded
+     * into a scratch buffer and the low surrogate is held back for the next
+     * read, so a read with room for at least one character always makes
+     * progress.
+     */
+    private static final class DecodingReader extends Reader {
+
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private final char[] scratch = new char[2];
+        private int pending = -1;
+        private boolean flushed = false;
+
+        private DecodingReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            } else if (pending != -1) {
+                buffer[offset] = (char) pending;
+                pending = -1;
+                return 1;
+            } else if (flushed) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            decode(out);
+            int read = out.position() - offset;
+            if (read == 0 && !flushed) {
+                CharBuffer pair = CharBuffer.wrap(scratch);
+                decode(pair);
+                if (pair.position() > 0) {
+                    buffer[offset] = scratch[0];
+                    pending = pair.position() == 2 ? scratch[1] : -1;
+                    read = 1;
+                }
+            }
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        private void decode(CharBuffer out) throws IOException {
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!bytes.hasRemaining()) {
+                flushed = decoder.flush(out).isUnderflow();
+            }
+        }
+
+        @Override
+        public void close() {}
+
+    }
+
+}
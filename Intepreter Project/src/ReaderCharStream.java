@@ -0,0 +1,110 @@
+package plc.compiler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * A {@link Lexer.CharStream} that pulls characters from a {@link Reader}
+ * through a fixed-size sliding window.
+ *
+ * The window only has to hold the literal currently being built plus any
+ * lookahead, so when it fills up the characters before the start of that
+ * literal are discarded. Memory is therefore bounded by the buffer size (or the
+ * longest single token, if larger) instead of by the size of the input.
+ */
+public final class ReaderCharStream extends Lexer.CharStream {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int offset; //absolute index of buffer[0]
+    private int limit = 0; //number of characters in the buffer
+    private boolean eof = false;
+
+    public ReaderCharStream(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ReaderCharStream(Reader reader, int bufferSize) {
+        this(reader, bufferSize, 0);
+    }
+
+    /**
+     * Creates a stream whose first character has the given absolute index, for
+     * when the reader picks up partway through an input.
+     */
+    ReaderCharStream(Reader reader, int bufferSize, int start) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        }
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.offset = start;
+        this.index = start;
+    }
+
+    @Override
+    public boolean has(int offset) {
+        int position = index + offset - this.offset;
+        while (position >= limit && !eof) {
+            fill();
+            position = index + offset - this.offset;
+        }
+        return position < limit;
+    }
+
+    @Override
+    public char get(int offset) {
+        if (!has(offset)) {
+            throw new IndexOutOfBoundsException("No character at index " + (index + offset) + ".");
+        }
+        return buffer[index + offset - this.offset];
+    }
+
+    @Override
+    String substring(int start, int end) {
+        if (start < offset) {
+            throw new IllegalStateException("Characters before index " + offset + " are no longer buffered.");
+        }
+        return new String(buffer, start - offset, end - start);
+    }
+
+    /**
+     * Reads more characters into the buffer, first sliding the literal being
+     * built to the front and only growing the buffer if that literal already
+     * fills it, or if the reader made no progress with the room left.
+     */
+    private void fill() {
+        int keep = index - length - offset;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            limit -= keep;
+            offset += keep;
+        } else if (limit == buffer.length) {
+            grow();
+        }
+        try {
+            int read;
+            while ((read = reader.read(buffer, limit, buffer.length - limit)) == 0) {
+                grow();
+            }
+            if (read == -1) {
+                eof = true;
+                reader.close();
+            } else {
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void grow() {
+        char[] grown = new char[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, limit);
+        buffer = grown;
+    }
+
+}
@@ -0,0 +1,184 @@
+package plc.compiler;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue handing values from exactly one producer thread
+ * to exactly one consumer thread, such as between the phases of a {@link
+ * Pipeline}.
+ *
+ * Values are stored in a power-of-two array indexed by two ever-increasing
+ * counters: the producer writes a slot and then publishes it by advancing the
+ * tail, and the consumer reads a slot and then frees it by advancing the head.
+ * Since each counter has a single writer, no compare-and-swap is needed, and
+ * each side caches the other's counter so it only re-reads it when the buffer
+ * looks full (or empty). A side which has to wait spins briefly and then
+ * parks until the other side makes progress.
+ *
+ * The producer ends the sequence with {@link #finish()}, or with {@link
+ * #fail(Throwable)}, in which case the consumer gets the failure (after the
+ * values before it) from {@link #hasNext()}. If the consumer gives up early it
+ * calls {@link #close()}, and the producer's next {@link #put(Object)} throws
+ * a {@link CancellationException} instead of waiting forever.
+ */
+public final class RingBuffer<T> implements Iterator<T> {
+
+    /**
+     * The number of times a waiting side re-checks the other's counter before
+     * parking. Spinning only helps if the other side is running on another
+     * processor at the same time.
+     */
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    private static final long PARK_NANOS = 100_000;
+
+    private final Object[] values;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long cachedHead = 0; //producer only
+    private long cachedTail = 0; //consumer only
+    private volatile boolean finished = false;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * Creates a buffer holding at least {@code capacity} values; the capacity
+     * is rounded up to a power of two.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity + ".");
+        }
+        this.values = new Object[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = values.length - 1;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Adds the value, waiting while the buffer is full. Throws a {@link
+     * CancellationException} if the consumer has closed the buffer.
+     */
+    public void put(T value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long index = tail.get();
+        for (int spins = 0; index - cachedHead == values.length; spins++) {
+            if (closed) {
+                throw new CancellationException("The consumer closed the buffer.");
+            } else if (spins >= SPINS) {
+                waitingProducer = Thread.currentThread();
+                if (index - head.get() == values.length && !closed) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waitingProducer = null;
+            }
+            cachedHead = head.get();
+        }
+        values[(int) index & mask] = value;
+        tail.set(index + 1);
+        wake(waitingConsumer);
+    }
+
+    /**
+     * Ends the sequence after the values added so far.
+     */
+    public void finish() {
+        finished = true;
+        wake(waitingConsumer);
+    }
+
+    /**
+     * Ends the sequence with a failure, which must be a {@link
+     * RuntimeException} or an {@link Error}. The consumer receives the values
+     * added so far, and then the failure is thrown from {@link #hasNext()}.
+     */
+    public void fail(Throwable failure) {
+        if (!(failure instanceof RuntimeException || failure instanceof Error)) {
+            throw new IllegalArgumentException("Only unchecked exceptions can be passed on.", failure);
+        }
+        this.failure = failure;
+        finish();
+    }
+
+    /**
+     * Returns true if there is another value, waiting until the producer
+     * adds one or ends the sequence.
+     */
+    @Override
+    public boolean hasNext() {
+        long index = head.get();
+        for (int spins = 0; index == cachedTail; spins++) {
+            boolean done = finished;
+            cachedTail = tail.get();
+            if (index != cachedTail) {
+                break;
+            } else if (done) {
+                Throwable failure = this.failure;
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                } else if (failure != null) {
+                    throw (RuntimeException) failure;
+                }
+                return false;
+            } else if (spins >= SPINS) {
+                waitingConsumer = Thread.currentThread();
+                if (index == tail.get() && !finished) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waitingConsumer = null;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long index = head.get();
+        int slot = (int) index & mask;
+        T value = (T) values[slot];
+        values[slot] = null;
+        head.set(index + 1);
+        wake(waitingProducer);
+        return value;
+    }
+
+    /**
+     * Called by the consumer when it will not read any more values, so the
+     * producer stops instead of waiting for space.
+     */
+    public void close() {
+        closed = true;
+        wake(waitingProducer);
+    }
+
+    private static void wake(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RingBuffer{" +
+                "capacity=" + values.length +
+                ", size=" + (tail.get() - head.get()) +
+                ", finished=" + finished +
+                ", closed=" + closed +
+                '}';
+    }
+
+}
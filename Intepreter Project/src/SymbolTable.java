@@ -0,0 +1,87 @@
+package plc.compiler;
+
+/**
+ * Interns identifier literals so that every occurrence of a name shares one
+ * {@link String} instance.
+ *
+ * Lookups hash the characters directly from the source, so a name that has
+ * already been seen costs no allocation. New names are canonicalized through
+ * {@link String#intern()}, which makes them the same instances as the string
+ * constants used by {@link Stdlib}, and lets the {@code HashMap} lookups in
+ * {@link Scope} and {@link Stdlib} succeed on the identity check in {@code
+ * String#equals}.
+ *
+ * A table is not thread-safe; each {@link TokenBuffer} owns its own.
+ */
+public final class SymbolTable {
+
+    private String[] table = new String[64];
+    private int size = 0;
+
+    /**
+     * Returns the canonical string for the given characters of the source.
+     */
+    public String intern(CharSequence source, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.charAt(start + i);
+        }
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String symbol = table[slot];
+            if (symbol == null) {
+                symbol = source.subSequence(start, start + length).toString().intern();
+                table[slot] = symbol;
+                if (++size * 2 > table.length) {
+                    resize();
+                }
+                return symbol;
+            } else if (symbol.hashCode() == hash && matches(symbol, source, start, length)) {
+                return symbol;
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical instance of the given string.
+     */
+    public String intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static boolean matches(String symbol, CharSequence source, int start, int length) {
+        if (symbol.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String symbol : old) {
+            if (symbol != null) {
+                int slot = spread(symbol.hashCode()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = symbol;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,332 @@
+package plc.compiler;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, struct-of-arrays sequence of tokens.
+ *
+ * Instead of one {@link Token} object (and one literal string) per token, the
+ * buffer stores each token's type, start and length in parallel {@code int}
+ * arrays and keeps a reference to the source text. Literals are only turned
+ * into strings when {@link #getLiteral(int)} or {@link #get(int)} is called,
+ * and {@link #literalEquals(int, String)} compares against the source without
+ * allocating at all.
+ *
+ * Identifiers are additionally classified as they are added: the {@link
+ * Keyword} (if any) is packed into the type entry, and identifier literals are
+ * interned through the buffer's {@link SymbolTable} when materialized.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+    private static final Keyword[] KEYWORDS = Keyword.values();
+
+    private final CharSequence source;
+    private final SymbolTable symbols;
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] indices; //only set when the reported index differs from the start
+    private int size = 0;
+
+    TokenBuffer(CharSequence source) {
+        this(source, 16);
+    }
+
+    TokenBuffer(CharSequence source, int capacity) {
+        this(source, capacity, new SymbolTable());
+    }
+
+    TokenBuffer(CharSequence source, int capacity, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        this.types = new int[Math.max(capacity, 1)];
+        this.starts = new int[types.length];
+        this.lengths = new int[types.length];
+    }
+
+    /**
+     * Creates a buffer holding the given tokens. Since the tokens do not come
+     * from a single source, their literals are copied into a new one, but the
+     * indices of the original tokens are preserved.
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        StringBuilder builder = new StringBuilder();
+        for (Token token : tokens) {
+            builder.append(token.getLiteral());
+        }
+        TokenBuffer buffer = new TokenBuffer(builder, tokens.size());
+        buffer.indices = new int[buffer.types.length];
+        int start = 0;
+        for (Token token : tokens) {
+            buffer.add(token.getType(), start, token.getLiteral().length());
+            buffer.indices[buffer.size - 1] = token.getIndex();
+            start += token.getLiteral().length();
+        }
+        return buffer;
+    }
+
+    /**
+     * Appends a copy of the token to a buffer created by {@link #of(List)},
+     * for parsers which read tokens as they arrive.
+     */
+    void append(Token token) {
+        if (indices == null) {
+            throw new IllegalStateException("Only buffers of copied tokens can be appended to.");
+        }
+        StringBuilder builder = (StringBuilder) source;
+        int start = builder.length();
+        builder.append(token.getLiteral());
+        add(token.getType(), start, token.getLiteral().length());
+        indices[size - 1] = token.getIndex();
+    }
+
+    /**
+     * Removes the first {@code count} tokens of a buffer created by {@link
+     * #of(List)} and their literals, shifting the rest to the front in place,
+     * for parsers which release tokens once they are consumed.
+     */
+    void drop(int count) {
+        if (indices == null) {
+            throw new IllegalStateException("Only buffers of copied tokens can be dropped from.");
+        }
+        StringBuilder builder = (StringBuilder) source;
+        int offset = count < size ? starts[count] : builder.length();
+        builder.delete(0, offset);
+        int remaining = size - count;
+        System.arraycopy(types, count, types, 0, remaining);
+        System.arraycopy(starts, count, starts, 0, remaining);
+        System.arraycopy(lengths, count, lengths, 0, remaining);
+        System.arraycopy(indices, count, indices, 0, remaining);
+        for (int i = 0; i < remaining; i++) {
+            starts[i] -= offset;
+        }
+        size = remaining;
+    }
+
+    /**
+     * Appends a token covering {@code length} characters of the source
+     * starting at {@code start}.
+     */
+    void add(Token.Type type, int start, int length) {
+        if (size == types.length) {
+            int capacity = types.length * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            if (indices != null) {
+                indices = Arrays.copyOf(indices, capacity);
+            }
+        }
+        int kind = type.ordinal();
+        if (type == Token.Type.IDENTIFIER) {
+            Keyword keyword = Keyword.of(source, start, length);
+            if (keyword != null) {
+                kind |= (keyword.ordinal() + 1) << 8;
+            }
+        }
+        types[size] = kind;
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * Returns a buffer for the edited source made of this buffer's tokens
+     * before {@code first}, the re-lexed tokens in {@code middle}, and this
+     * buffer's tokens from {@code resume} onwards with their starts shifted by
+     * {@code delta}. The symbol table is shared with this buffer.
+     */
+    TokenBuffer splice(CharSequence source, int first, TokenBuffer middle, int resume, int delta) {
+        if (indices != null) {
+            throw new IllegalStateException("Only buffers lexed from a source can be spliced.");
+        }
+        int tail = size - resume;
+        TokenBuffer result = new TokenBuffer(source, first + middle.size + tail, symbols);
+        System.arraycopy(types, 0, result.types, 0, first);
+        System.arraycopy(starts, 0, result.starts, 0, first);
+        System.arraycopy(lengths, 0, result.lengths, 0, first);
+        System.arraycopy(middle.types, 0, result.types, first, middle.size);
+        System.arraycopy(middle.starts, 0, result.starts, first, middle.size);
+        System.arraycopy(middle.lengths, 0, result.lengths, first, middle.size);
+        int offset = first + middle.size;
+        System.arraycopy(types, resume, result.types, offset, tail);
+        System.arraycopy(lengths, resume, result.lengths, offset, tail);
+        for (int i = 0; i < tail; i++) {
+            result.starts[offset + i] = starts[resume + i] + delta;
+        }
+        result.size = offset + tail;
+        return result;
+    }
+
+    /**
+     * Returns a buffer with the tokens of each buffer in order. The buffers
+     * must all have been lexed from the given source.
+     */
+    static TokenBuffer concat(CharSequence source, List<TokenBuffer> buffers) {
+        int size = 0;
+        for (TokenBuffer buffer : buffers) {
+            size += buffer.size;
+        }
+        TokenBuffer result = new TokenBuffer(source, size);
+        for (TokenBuffer buffer : buffers) {
+            System.arraycopy(buffer.types, 0, result.types, result.size, buffer.size);
+            System.arraycopy(buffer.starts, 0, result.starts, result.size, buffer.size);
+            System.arraycopy(buffer.lengths, 0, result.lengths, result.size, buffer.size);
+            result.size += buffer.size;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first token that ends at or after the given offset, or
+     * {@link #size()} if every token ends before it.
+     */
+    int findEnd(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] + lengths[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the token at or after {@code from} that starts exactly at the
+     * given offset, or -1 if no token starts there.
+     */
+    int findStart(int offset, int from) {
+        int low = from;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else if (starts[mid] > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public Token.Type getType(int i) {
+        return TYPES[types[check(i)] & 0xFF];
+    }
+
+    /**
+     * Returns the keyword of the token, or {@code null} if the token is not a
+     * keyword.
+     */
+    public Keyword getKeyword(int i) {
+        int keyword = types[check(i)] >>> 8;
+        return keyword == 0 ? null : KEYWORDS[keyword - 1];
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns the index of the token, which is the same as the value of
+     * {@link Token#getIndex()}.
+     */
+    public int getIndex(int i) {
+        return indices != null ? indices[check(i)] : starts[check(i)];
+    }
+
+    /**
+     * Returns the offset of the token's literal within the source.
+     */
+    public int getStart(int i) {
+        return starts[check(i)];
+    }
+
+    public int getLength(int i) {
+        return lengths[check(i)];
+    }
+
+    /**
+     * Materializes the literal of the token as a string. Identifier literals
+     * are interned, so repeated names return the same instance.
+     */
+    public String getLiteral(int i) {
+        if (getType(i) == Token.Type.IDENTIFIER) {
+            return symbols.intern(source, starts[i], lengths[i]);
+        }
+        return source.subSequence(starts[i], starts[i] + lengths[i]).toString();
+    }
+
+    /**
+     * Returns true if the literal of the token is equal to the given string,
+     * without materializing the literal.
+     */
+    public boolean literalEquals(int i, String literal) {
+        int start = starts[check(i)];
+        if (lengths[i] != literal.length()) {
+            return false;
+        }
+        for (int j = 0; j < lengths[i]; j++) {
+            if (source.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Materializes the token as a {@link Token} object.
+     */
+    public Token get(int i) {
+        return new Token(getType(i), getLiteral(i), getIndex(i));
+    }
+
+    /**
+     * Returns a list view of the buffer, which materializes each token as it
+     * is accessed.
+     */
+    public List<Token> toList() {
+        return new AbstractList<Token>() {
+
+            @Override
+            public Token get(int index) {
+                return TokenBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for " + size + " tokens.");
+        }
+        return i;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+}
@@ -0,0 +1,28 @@
+package plc.compiler;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A pull-based sequence of tokens. Unlike {@link Lexer#lex(String)}, which
+ * returns every token at once, a source lexes each token only when it is
+ * requested, so consumers can start on the first token before the rest of the
+ * input has been read.
+ *
+ * Lexing errors are thrown as a {@link ParseException} from {@link #hasNext()}
+ * or {@link #next()} when the offending token is reached.
+ */
+public interface TokenSource extends Iterator<Token> {
+
+    /**
+     * Returns a sequential stream over the remaining tokens.
+     */
+    default Stream<Token> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+}
@@ -16,17 +16,45 @@ import java.util.stream.Collectors;
  * There is a fair bit of Java overhead in these classes for getters and
  * equals/toString, which are be needed for the interpreter, JUnit tests, and
  * debugging.
+ *
+ * Each node computes its structural hash when it is constructed from the
+ * (already computed) hashes of its children, so {@link #hashCode()} is O(1)
+ * and {@link #equals(Object)} can reject most unequal trees without walking
+ * them. Nodes are therefore treated as immutable: the list of arguments
+ * passed to a {@link Term} must not be modified afterwards. See {@link
+ * AstFactory} for sharing structurally equal subtrees.
  */
 public class Ast {
 
+    private long span = Span.NONE;
+
+    /**
+     * Returns the packed {@link Span} of the source this node was parsed
+     * from, or {@link Span#NONE}. Spans are not part of the structure of a
+     * node, so they are ignored by equals and hashCode.
+     */
+    public final long getSpan() {
+        return span;
+    }
+
+    /**
+     * Sets the span of the node. This is only called by whatever created the
+     * node (such as a parser or decoder), before the node is shared.
+     */
+    final void setSpan(long span) {
+        this.span = span;
+    }
+
     public static final class Term extends Ast {
 
         private final String name;
         private final List<Ast> args;
+        private final int hash;
 
         public Term(String name, List<Ast> args) {
             this.name = name;
             this.args = args;
+            this.hash = 31 * name.hashCode() + args.hashCode();
         }
 
         public String getName() {
@@ -39,7 +67,13 @@ public class Ast {
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof Term && name.equals(((Term) obj).name) && args.equals(((Term) obj).args);
+            return obj == this || obj instanceof Term && hash == ((Term) obj).hash &&
+                    name.equals(((Term) obj).name) && args.equals(((Term) obj).args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
         @Override
@@ -63,7 +97,12 @@ public class Ast {
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof Identifier && name.equals(((Identifier) obj).name);
+            return obj == this || obj instanceof Identifier && name.equals(((Identifier) obj).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 + name.hashCode();
         }
 
         @Override
@@ -84,20 +123,44 @@ public class Ast {
          * languages support infinite precision numbers (and some use them by
          * default), and we think this is a worthwhile concept to be familiar
          * with in general.
+         *
+         * The value is stored in its narrowest representation (see {@link
+         * Numbers}), so integers which fit are longs; literals which are
+         * numerically equal but written differently, like {@code 1} and
+         * {@code 1.0}, are still distinct.
          */
-        private final BigDecimal value;
+        private final Number value;
+        private final int hash;
 
-        public NumberLiteral(BigDecimal value) {
-            this.value = value;
+        public NumberLiteral(Number value) {
+            this.value = Numbers.narrow(value);
+            this.hash = 37 + this.value.hashCode();
         }
 
+        /**
+         * Returns the value as a {@link BigDecimal}. This allocates for values
+         * which are not already decimals; see {@link #getNumber()}.
+         */
         public BigDecimal getValue() {
+            return Numbers.toBigDecimal(value);
+        }
+
+        /**
+         * Returns the value in its narrowest representation, which is what
+         * the literal evaluates to.
+         */
+        public Number getNumber() {
             return value;
         }
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof NumberLiteral && value.equals(((NumberLiteral) obj).value);
+            return obj == this || obj instanceof NumberLiteral && value.equals(((NumberLiteral) obj).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
 
         @Override
@@ -121,7 +184,12 @@ public class Ast {
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof StringLiteral && value.equals(((StringLiteral) obj).value);
+            return obj == this || obj instanceof StringLiteral && value.equals(((StringLiteral) obj).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 41 + value.hashCode();
         }
 
         @Override
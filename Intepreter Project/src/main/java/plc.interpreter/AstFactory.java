@@ -0,0 +1,125 @@
+package plc.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates hash-consed {@link Ast} nodes: every structurally equal subtree
+ * created (or interned) through the same factory is the same instance.
+ *
+ * Since the children of a canonical node are canonical themselves, checking
+ * whether a new node already exists only compares its children by identity,
+ * so creating a node is O(number of children) and canonical nodes can be
+ * compared with {@code ==}. Repeated identifiers, literals and common
+ * subexpressions are stored once, which makes a large difference for
+ * generated programs. Canonical terms hold unmodifiable argument lists.
+ *
+ * A shared node has no single position in the source, so canonical nodes
+ * carry no spans: {@link Ast#getSpan()} is {@link Span#NONE} for every node
+ * of an interned tree. Diagnostics which need positions should use the tree
+ * produced by the parser.
+ *
+ * The factory is thread-safe and keeps every node it has created, so it
+ * should be discarded along with the trees it produced.
+ */
+public final class AstFactory {
+
+    private final ConcurrentHashMap<Ast, Ast> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the canonical term. Arguments created by this factory are used
+     * as is, and any others are interned first.
+     */
+    public Ast.Term term(String name, List<Ast> args) {
+        List<Ast> canonical = new ArrayList<>(args.size());
+        for (Ast arg : args) {
+            canonical.add(nodes.get(arg) == arg ? arg : intern(arg));
+        }
+        return canonical(new Ast.Term(name, Collections.unmodifiableList(canonical)));
+    }
+
+    public Ast.Identifier identifier(String name) {
+        return canonical(new Ast.Identifier(name));
+    }
+
+    public Ast.NumberLiteral number(Number value) {
+        return canonical(new Ast.NumberLiteral(value));
+    }
+
+    public Ast.StringLiteral string(String value) {
+        return canonical(new Ast.StringLiteral(value));
+    }
+
+    /**
+     * Returns the canonical instance of a tree structurally equal to the
+     * given one. The tree is rebuilt bottom-up, so that nodes are only ever
+     * looked up once their children are canonical, and walked with an
+     * explicit stack, so the depth of nesting is only limited by the heap.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Ast> T intern(T ast) {
+        Deque<Ast.Term> stack = new ArrayDeque<>();
+        Deque<List<Ast>> args = new ArrayDeque<>();
+        Ast next = ast;
+        while (true) {
+            Ast result = null;
+            if (next instanceof Ast.Term) {
+                stack.push((Ast.Term) next);
+                args.push(new ArrayList<>(((Ast.Term) next).getArgs().size()));
+            } else {
+                result = canonical(unspanned(next));
+            }
+            while (result != null || !stack.isEmpty() && args.peek().size() == stack.peek().getArgs().size()) {
+                if (result == null) {
+                    Ast.Term original = stack.pop();
+                    result = canonical(new Ast.Term(original.getName(), Collections.unmodifiableList(args.pop())));
+                }
+                if (stack.isEmpty()) {
+                    return (T) result;
+                }
+                args.peek().add(result);
+                result = null;
+            }
+            next = stack.peek().getArgs().get(args.peek().size());
+        }
+    }
+
+    /**
+     * Returns the number of distinct nodes created by this factory.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the leaf node, or a copy of it without its span if it has one.
+     */
+    private static Ast unspanned(Ast leaf) {
+        if (leaf.getSpan() == Span.NONE) {
+            return leaf;
+        } else if (leaf instanceof Ast.Identifier) {
+            return new Ast.Identifier(((Ast.Identifier) leaf).getName());
+        } else if (leaf instanceof Ast.NumberLiteral) {
+            return new Ast.NumberLiteral(((Ast.NumberLiteral) leaf).getNumber());
+        } else if (leaf instanceof Ast.StringLiteral) {
+            return new Ast.StringLiteral(((Ast.StringLiteral) leaf).getValue());
+        } else {
+            throw new AssertionError(leaf.getClass());
+        }
+    }
+
+    /**
+     * Returns the canonical instance of a node whose children are already
+     * canonical, registering the node itself if it is new.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> T canonical(T ast) {
+        Ast existing = nodes.putIfAbsent(ast, ast);
+        return existing != null ? (T) existing : ast;
+    }
+
+}
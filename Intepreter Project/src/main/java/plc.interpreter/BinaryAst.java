@@ -0,0 +1,151 @@
+package plc.interpreter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Encodes Whisp ASTs in the {@link BinaryFormat}, so a program can be parsed
+ * once and loaded quickly on later runs.
+ *
+ * A term is written as its name and number of arguments followed by the
+ * arguments themselves, and identifiers and literals as their constant.
+ * Both directions use an explicit stack like {@link Parser#parseIterative(List)},
+ * so deeply nested terms do not overflow the Java stack.
+ */
+public final class BinaryAst {
+
+    static final int MAGIC = 0x57535041; // "WSPA"
+
+    private static final int TERM = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int NUMBER = 2;
+    private static final int STRING = 3;
+
+    private BinaryAst() {}
+
+    public static byte[] encode(Ast ast) {
+        BinaryFormat.Writer writer = new BinaryFormat.Writer(MAGIC);
+        Deque<Ast> stack = new ArrayDeque<>();
+        stack.push(ast);
+        while (!stack.isEmpty()) {
+            Ast next = stack.pop();
+            if (next instanceof Ast.Term) {
+                List<Ast> args = ((Ast.Term) next).getArgs();
+                writer.node(TERM);
+                writer.span(next.getSpan());
+                writer.constant(((Ast.Term) next).getName());
+                writer.varint(args.size());
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    stack.push(args.get(i));
+                }
+            } else if (next instanceof Ast.Identifier) {
+                writer.node(IDENTIFIER);
+                writer.span(next.getSpan());
+                writer.constant(((Ast.Identifier) next).getName());
+            } else if (next instanceof Ast.NumberLiteral) {
+                writer.node(NUMBER);
+                writer.span(next.getSpan());
+                writer.constant(((Ast.NumberLiteral) next).getValue());
+            } else if (next instanceof Ast.StringLiteral) {
+                writer.node(STRING);
+                writer.span(next.getSpan());
+                writer.constant(((Ast.StringLiteral) next).getValue());
+            } else {
+                throw new AssertionError(next.getClass());
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a tree written by {@link #encode(Ast)}, throwing an {@link
+     * IllegalArgumentException} if the data is malformed.
+     */
+    public static Ast decode(ByteBuffer buffer) {
+        try {
+            BinaryFormat.Reader reader = new BinaryFormat.Reader(buffer, MAGIC);
+            Deque<OpenTerm> stack = new ArrayDeque<>();
+            for (int i = 0; i < reader.getNodes(); i++) {
+                int tag = reader.tag();
+                long span = reader.span();
+                Ast ast;
+                if (tag == TERM) {
+                    String name = reader.string();
+                    int count = reader.varint();
+                    if (count > 0) {
+                        stack.push(new OpenTerm(name, count, span));
+                        continue;
+                    }
+                    ast = new Ast.Term(name, new ArrayList<>());
+                } else if (tag == IDENTIFIER) {
+                    ast = new Ast.Identifier(reader.string());
+                } else if (tag == NUMBER) {
+                    ast = new Ast.NumberLiteral((BigDecimal) reader.constant());
+                } else if (tag == STRING) {
+                    ast = new Ast.StringLiteral(reader.string());
+                } else {
+                    throw new IllegalArgumentException("Unknown node tag " + tag + ".");
+                }
+                ast.setSpan(span);
+                while (!stack.isEmpty()) {
+                    OpenTerm term = stack.peek();
+                    term.args.add(ast);
+                    if (term.args.size() < term.count) {
+                        break;
+                    }
+                    stack.pop();
+                    ast = new Ast.Term(term.name, term.args);
+                    ast.setSpan(term.span);
+                }
+                if (stack.isEmpty()) {
+                    if (i != reader.getNodes() - 1) {
+                        throw new IllegalArgumentException("Unexpected node after the root.");
+                    }
+                    reader.finish();
+                    return ast;
+                }
+            }
+            throw new IllegalArgumentException("Unexpected end of nodes.");
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IllegalArgumentException("Malformed AST data.", e);
+        }
+    }
+
+    public static void write(Ast ast, Path path) throws IOException {
+        BinaryFormat.write(path, encode(ast));
+    }
+
+    /**
+     * Memory-maps the file and decodes the tree stored in it.
+     */
+    public static Ast read(Path path) throws IOException {
+        return decode(BinaryFormat.map(path));
+    }
+
+    /**
+     * A term whose arguments have not all been decoded yet.
+     */
+    private static final class OpenTerm {
+
+        private final String name;
+        private final int count;
+        private final long span;
+        private final List<Ast> args;
+
+        private OpenTerm(String name, int count, long span) {
+            this.name = name;
+            this.count = count;
+            this.span = span;
+            this.args = new ArrayList<>(Math.min(count, 1024));
+        }
+
+    }
+
+}
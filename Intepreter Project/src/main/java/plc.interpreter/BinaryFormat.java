@@ -0,0 +1,357 @@
+package plc.interpreter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The versioned container format shared by the binary AST encodings of both
+ * languages (see {@link BinaryAst} and {@code plc.compiler.BinaryAst}).
+ *
+ * A file consists of a four byte magic number identifying the kind of tree,
+ * the format {@link #VERSION}, a constant pool, and a pre-order stream of
+ * nodes. Every name and literal is stored once in the constant pool and nodes
+ * refer to it by index, so a node is just a one byte tag followed by a few
+ * varints (unsigned LEB128) for its {@link Span}, constant indices and child
+ * counts. Reading a tree back is therefore a single forward pass with no
+ * tokenizing, and the pool is decoded once up front.
+ */
+public final class BinaryFormat {
+
+    public static final int VERSION = 2;
+
+    private static final int STRING = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 4;
+    private static final int BIG_INTEGER = 5;
+    private static final int BIG_DECIMAL = 6;
+
+    private BinaryFormat() {}
+
+    /**
+     * Memory-maps the file for reading.
+     */
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Writes the encoded bytes to the file, replacing any existing contents.
+     */
+    public static void write(Path path, byte[] bytes) throws IOException {
+        Files.write(path, bytes);
+    }
+
+    /**
+     * Collects the constant pool and node stream of a tree being encoded.
+     */
+    public static final class Writer {
+
+        private final int magic;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> indices = new HashMap<>();
+        private byte[] nodes = new byte[256];
+        private int size = 0;
+        private int count = 0;
+
+        public Writer(int magic) {
+            this.magic = magic;
+        }
+
+        /**
+         * Starts a new node with the given tag.
+         */
+        public void node(int tag) {
+            count++;
+            ensure(1);
+            nodes[size++] = (byte) tag;
+        }
+
+        public void varint(int value) {
+            ensure(5);
+            size = putVarint(nodes, size, value);
+        }
+
+        /**
+         * Writes the pool index of the constant, adding it to the pool if it
+         * has not been seen yet. Supported constants are {@link String},
+         * {@link Boolean}, {@link Integer}, {@link Double}, {@link BigInteger},
+         * and {@link BigDecimal}.
+         */
+        public void constant(Object value) {
+            varint(index(value));
+        }
+
+        /**
+         * Like {@link #constant(Object)}, but also allows {@code null}.
+         */
+        public void constantOrNull(Object value) {
+            varint(value == null ? 0 : index(value) + 1);
+        }
+
+        /**
+         * Writes a packed {@link Span} as its start plus one and its length,
+         * or just zero for {@link Span#NONE}.
+         */
+        public void span(long span) {
+            if (span == Span.NONE) {
+                varint(0);
+            } else {
+                varint(Span.getStart(span) + 1);
+                varint(Span.getLength(span));
+            }
+        }
+
+        private int index(Object value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                if (!(value instanceof String || value instanceof Boolean || value instanceof Integer
+                        || value instanceof Double || value instanceof BigInteger || value instanceof BigDecimal)) {
+                    throw new IllegalArgumentException("Unsupported constant " + value + ".");
+                }
+                index = constants.size();
+                constants.add(value);
+                indices.put(value, index);
+            }
+            return index;
+        }
+
+        private void ensure(int bytes) {
+            if (size + bytes > nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + bytes));
+            }
+        }
+
+        public byte[] toByteArray() {
+            Output output = new Output();
+            output.int32(magic);
+            output.varint(VERSION);
+            output.varint(constants.size());
+            for (Object constant : constants) {
+                output.constant(constant);
+            }
+            output.varint(count);
+            output.bytes(nodes, size);
+            return output.toByteArray();
+        }
+
+    }
+
+    /**
+     * Reads the constant pool and then the nodes of an encoded tree, in the
+     * order they were written.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer buffer;
+        private final Object[] constants;
+        private final int nodes;
+
+        /**
+         * Reads the header and constant pool, throwing an {@link
+         * IllegalArgumentException} if the data is not of the expected kind
+         * or version.
+         */
+        public Reader(ByteBuffer buffer, int magic) {
+            this.buffer = buffer.duplicate();
+            if (this.buffer.remaining() < 4 || this.buffer.getInt() != magic) {
+                throw new IllegalArgumentException("Unrecognized AST data.");
+            }
+            int version = varint();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported AST format version " + version + ".");
+            }
+            constants = new Object[varint()];
+            for (int i = 0; i < constants.length; i++) {
+                constants[i] = readConstant();
+            }
+            nodes = varint();
+        }
+
+        /**
+         * Returns the number of nodes in the stream.
+         */
+        public int getNodes() {
+            return nodes;
+        }
+
+        public int tag() {
+            return buffer.get() & 0xFF;
+        }
+
+        public int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint.");
+        }
+
+        public Object constant() {
+            return constants[varint()];
+        }
+
+        public Object constantOrNull() {
+            int index = varint();
+            return index == 0 ? null : constants[index - 1];
+        }
+
+        public String string() {
+            return (String) constant();
+        }
+
+        public long span() {
+            int start = varint() - 1;
+            return start < 0 ? Span.NONE : Span.of(start, start + varint());
+        }
+
+        /**
+         * Throws an {@link IllegalArgumentException} if there is data left
+         * after the last node.
+         */
+        public void finish() {
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected data after the last node.");
+            }
+        }
+
+        private Object readConstant() {
+            int tag = tag();
+            switch (tag) {
+                case STRING:
+                    return new String(bytes(), StandardCharsets.UTF_8);
+                case FALSE:
+                    return false;
+                case TRUE:
+                    return true;
+                case INTEGER:
+                    return unzigzag(varint());
+                case DOUBLE:
+                    return Double.longBitsToDouble(buffer.getLong());
+                case BIG_INTEGER:
+                    return new BigInteger(bytes());
+                case BIG_DECIMAL:
+                    int scale = unzigzag(varint());
+                    return new BigDecimal(new BigInteger(bytes()), scale);
+                default:
+                    throw new IllegalArgumentException("Unknown constant tag " + tag + ".");
+            }
+        }
+
+        private byte[] bytes() {
+            byte[] bytes = new byte[varint()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+    }
+
+    /**
+     * A growable byte array for assembling the encoded file.
+     */
+    private static final class Output {
+
+        private byte[] bytes = new byte[256];
+        private int size = 0;
+
+        private void int32(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void varint(int value) {
+            ensure(5);
+            size = putVarint(bytes, size, value);
+        }
+
+        private void bytes(byte[] data, int length) {
+            ensure(length);
+            System.arraycopy(data, 0, bytes, size, length);
+            size += length;
+        }
+
+        private void block(byte[] data) {
+            varint(data.length);
+            bytes(data, data.length);
+        }
+
+        private void constant(Object value) {
+            if (value instanceof String) {
+                tag(STRING);
+                block(((String) value).getBytes(StandardCharsets.UTF_8));
+            } else if (value instanceof Boolean) {
+                tag((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                tag(INTEGER);
+                varint(zigzag((Integer) value));
+            } else if (value instanceof Double) {
+                tag(DOUBLE);
+                long bits = Double.doubleToRawLongBits((Double) value);
+                int32((int) (bits >>> 32));
+                int32((int) bits);
+            } else if (value instanceof BigInteger) {
+                tag(BIG_INTEGER);
+                block(((BigInteger) value).toByteArray());
+            } else {
+                tag(BIG_DECIMAL);
+                varint(zigzag(((BigDecimal) value).scale()));
+                block(((BigDecimal) value).unscaledValue().toByteArray());
+            }
+        }
+
+        private void tag(int tag) {
+            ensure(1);
+            bytes[size++] = (byte) tag;
+        }
+
+        private void ensure(int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+    }
+
+    private static int putVarint(byte[] bytes, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[index++] = (byte) value;
+        return index;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
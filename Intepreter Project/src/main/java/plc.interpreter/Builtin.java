@@ -0,0 +1,49 @@
+package plc.interpreter;
+
+/**
+ * A function whose arguments are evaluated before it is called, such as the
+ * functions in the standard library.
+ *
+ * The interpreter calls the entry point matching the number of arguments and
+ * passes the values directly, so a call with up to three arguments needs no
+ * list or array if the function overrides the matching entry point. Only
+ * {@link #callN(Object[])} has to be implemented, which handles any number of
+ * arguments; the other entry points call it by default, which allocates an
+ * array for one to three arguments.
+ *
+ * Anything else callable in a scope is a {@code Function<List<Ast>, Object>},
+ * which is a special form: it receives its arguments as unevaluated ASTs and
+ * decides itself whether and when to evaluate them.
+ */
+@FunctionalInterface
+public interface Builtin {
+
+    /**
+     * The arguments {@link #call0()} passes to {@link #callN(Object[])} by
+     * default, shared since an empty array cannot be modified.
+     */
+    Object[] NO_ARGS = new Object[0];
+
+    default Object call0() throws EvalException {
+        return callN(NO_ARGS);
+    }
+
+    default Object call1(Object arg) throws EvalException {
+        return callN(new Object[] {arg});
+    }
+
+    default Object call2(Object arg1, Object arg2) throws EvalException {
+        return callN(new Object[] {arg1, arg2});
+    }
+
+    default Object call3(Object arg1, Object arg2, Object arg3) throws EvalException {
+        return callN(new Object[] {arg1, arg2, arg3});
+    }
+
+    /**
+     * Calls the function with any number of arguments. The array belongs to
+     * the function, which may modify it.
+     */
+    Object callN(Object[] args) throws EvalException;
+
+}
@@ -0,0 +1,351 @@
+package plc.interpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Validates every line of a (possibly very large) file against one of the
+ * {@link Regex} patterns, such as {@link Regex#EMAIL}.
+ *
+ * The file is split into chunks of roughly {@code chunkSize} bytes which are
+ * validated in parallel. A chunk owns the lines that start within it, so a
+ * line crossing a chunk boundary is validated exactly once. Each chunk maps
+ * only its own bytes plus {@link #SLACK} for a line running past its end,
+ * and remaps further if a line is longer than that. Lines are matched in
+ * place through a {@link CharSequence} view of the mapped bytes with a single
+ * {@link Matcher} per worker thread, so no {@link String} is created unless
+ * the line contains non-ASCII characters and has to be decoded. Lines are
+ * terminated by {@code \n}, optionally preceded by {@code \r}, and the file
+ * is read as UTF-8.
+ */
+public final class BulkValidator {
+
+    static final int CHUNK_SIZE = 8 << 20;
+    /**
+     * The number of bytes mapped past the end of a chunk, which is enough
+     * for the last line of the chunk unless it is unusually long.
+     */
+    static final int SLACK = 64 << 10;
+
+    private final Pattern pattern;
+    private final Regex.Engine engine;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final ThreadLocal<Matcher> matchers;
+
+    public BulkValidator(Pattern pattern, Regex.Engine engine) {
+        this(pattern, engine, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    public BulkValidator(Pattern pattern, Regex.Engine engine, ForkJoinPool pool, int chunkSize) {
+        this.pattern = pattern;
+        this.engine = engine;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+        if (engine == Regex.Engine.LINEAR) {
+            Regex.linear(pattern);
+        }
+    }
+
+    /**
+     * Validates each line of the file, returning the aggregate {@link Report}.
+     */
+    public Report validate(Path path) throws IOException {
+        long begin = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Callable<Chunk>> tasks = new ArrayList<>();
+            for (long start = 0; start < size; start += chunkSize) {
+                long from = start;
+                long to = Math.min(start + chunkSize, size);
+                tasks.add(() -> validate(channel, size, from, to));
+            }
+            List<Chunk> chunks = new ArrayList<>(tasks.size());
+            long lines = 0;
+            int count = 0;
+            for (Future<Chunk> future : pool.invokeAll(tasks)) {
+                Chunk chunk = join(future);
+                chunks.add(chunk);
+                lines += chunk.lines;
+                count = Math.addExact(count, chunk.rejected);
+            }
+            long[] rejected = new long[count];
+            int position = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.offsets, 0, rejected, position, chunk.rejected);
+                position += chunk.rejected;
+            }
+            return new Report(lines, lines - count, rejected, size, System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Validates the lines which start in the range [from, to) of the file.
+     */
+    private Chunk validate(FileChannel channel, long size, long from, long to) throws IOException {
+        long base = Math.max(from - 1, 0);
+        Window window = new Window(channel, size);
+        window.map(base, to - base + SLACK);
+        int index = (int) (from - base);
+        if (from > 0) {
+            while (true) {
+                while (index - 1 < window.limit && window.buffer.get(index - 1) != '\n') {
+                    index++;
+                }
+                if (index - 1 < window.limit || !window.slide(index - 1)) {
+                    break;
+                }
+                index = 1;
+            }
+        }
+        Chunk chunk = new Chunk();
+        ByteSequence line = new ByteSequence(window);
+        Matcher matcher = engine == Regex.Engine.BACKTRACKING ? matchers.get() : null;
+        LazyDfa dfa = engine == Regex.Engine.LINEAR ? Regex.linear(pattern) : null;
+        while (window.base + index < to) {
+            int start = index;
+            boolean ascii = true;
+            while (index < window.limit && window.buffer.get(index) != '\n') {
+                ascii &= window.buffer.get(index) >= 0;
+                index++;
+            }
+            if (index == window.limit && window.slide(start)) {
+                index = 0;
+                continue;
+            }
+            int stop = index > start && window.buffer.get(index - 1) == '\r' ? index - 1 : index;
+            index++;
+            CharSequence input = ascii ? line.set(start, stop - start) : line.decode(start, stop - start);
+            boolean matches = matcher != null ? matcher.reset(input).matches() : dfa.matches(input);
+            chunk.add(matches, window.base + start);
+        }
+        if (matcher != null) {
+            matcher.reset("");
+        }
+        return chunk;
+    }
+
+    /**
+     * Waits for the result of a task, rethrowing any exception it threw.
+     */
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The counts and rejected offsets of a single chunk.
+     */
+    private static final class Chunk {
+
+        private long lines = 0;
+        private int rejected = 0;
+        private long[] offsets = new long[16];
+
+        private void add(boolean matches, long offset) {
+            lines++;
+            if (!matches) {
+                if (rejected == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, rejected * 2);
+                }
+                offsets[rejected++] = offset;
+            }
+        }
+
+    }
+
+    /**
+     * The mapped part of the file a chunk is reading, which can be moved
+     * forward when a line runs past its end.
+     */
+    private static final class Window {
+
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private int limit;
+        private MappedByteBuffer buffer;
+
+        private Window(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * Maps up to {@code length} bytes from the position, which is limited
+         * by the end of the file and to 2GB.
+         */
+        private void map(long position, long length) throws IOException {
+            base = position;
+            limit = (int) Math.min(Math.min(size - position, length), Integer.MAX_VALUE);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+        }
+
+        /**
+         * Remaps the window to start at the given offset into it and to map
+         * at least twice as many bytes past that offset as before. Returns
+         * false if the window already reaches the end of the file.
+         */
+        private boolean slide(int offset) throws IOException {
+            if (base + limit >= size) {
+                return false;
+            } else if (offset == 0 && limit == Integer.MAX_VALUE) {
+                throw new IOException("Line at offset " + base + " is longer than 2GB.");
+            }
+            map(base + offset, 2L * Math.max(limit - offset, SLACK));
+            return true;
+        }
+
+    }
+
+    /**
+     * A reusable view of an ASCII line in the mapped window.
+     */
+    private static final class ByteSequence implements CharSequence {
+
+        private final Window window;
+        private int offset;
+        private int length;
+
+        private ByteSequence(Window window) {
+            this.window = window;
+        }
+
+        private ByteSequence set(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        private String decode(int offset, int length) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = window.buffer.get(offset + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length + ".");
+            }
+            return (char) window.buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return decode(offset, length);
+        }
+
+    }
+
+    /**
+     * The result of validating a file. Rejected lines are identified by the
+     * byte offset of their first character, in order.
+     */
+    public static final class Report {
+
+        private final long lines;
+        private final long matched;
+        private final long[] rejected;
+        private final long bytes;
+        private final long nanos;
+
+        Report(long lines, long matched, long[] rejected, long bytes, long nanos) {
+            this.lines = lines;
+            this.matched = matched;
+            this.rejected = rejected;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getMatched() {
+            return matched;
+        }
+
+        public long getRejected() {
+            return rejected.length;
+        }
+
+        public long[] getRejectedOffsets() {
+            return rejected.clone();
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getLinesPerSecond() {
+            return lines / seconds();
+        }
+
+        /**
+         * Returns the throughput in megabytes (10^6 bytes) per second.
+         */
+        public double getMegabytesPerSecond() {
+            return bytes / 1e6 / seconds();
+        }
+
+        private double seconds() {
+            return Math.max(nanos, 1) / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" +
+                    "lines=" + lines +
+                    ", matched=" + matched +
+                    ", rejected=" + rejected.length +
+                    ", bytes=" + bytes +
+                    ", linesPerSecond=" + String.format("%.0f", getLinesPerSecond()) +
+                    ", megabytesPerSecond=" + String.format("%.1f", getMegabytesPerSecond()) +
+                    '}';
+        }
+
+    }
+
+}
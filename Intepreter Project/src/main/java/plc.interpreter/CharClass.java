@@ -0,0 +1,77 @@
+package plc.interpreter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A precomputed set of characters, used by the lexers in place of matching a
+ * single-character regex against every character of the input.
+ *
+ * A class is built from the same kind of pattern the lexers have always used
+ * with {@code peek} and {@code match} (such as {@code "[A-Za-z_]"}). The
+ * pattern is evaluated once for every ASCII character and the results are
+ * stored as a 128-bit set, so checking an ASCII character is a shift and a
+ * mask. Characters outside of ASCII fall back to the compiled pattern, which
+ * keeps the semantics identical to {@code String#matches}.
+ */
+public final class CharClass {
+
+    private static final Map<String, CharClass> CLASSES = new ConcurrentHashMap<>();
+
+    private final String regex;
+    private final Pattern pattern;
+    private final long low;
+    private final long high;
+
+    private CharClass(String regex) {
+        this.regex = regex;
+        this.pattern = Pattern.compile(regex);
+        long low = 0;
+        long high = 0;
+        for (char c = 0; c < 128; c++) {
+            if (pattern.matcher(String.valueOf(c)).matches()) {
+                if (c < 64) {
+                    low |= 1L << c;
+                } else {
+                    high |= 1L << (c - 64);
+                }
+            }
+        }
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Returns the character class for the given single-character regex. Classes
+     * are cached, so the pattern is only ever compiled once.
+     */
+    public static CharClass of(String regex) {
+        return CLASSES.computeIfAbsent(regex, CharClass::new);
+    }
+
+    /**
+     * Returns true if the character is a member of this class.
+     */
+    public boolean contains(char c) {
+        if (c < 64) {
+            return (low & (1L << c)) != 0;
+        } else if (c < 128) {
+            return (high & (1L << (c - 64))) != 0;
+        } else {
+            return pattern.matcher(String.valueOf(c)).matches();
+        }
+    }
+
+    public String getRegex() {
+        return regex;
+    }
+
+    @Override
+    public String toString() {
+        return "CharClass{" +
+                "regex='" + regex + '\'' +
+                '}';
+    }
+
+}
@@ -0,0 +1,315 @@
+package plc.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+/**
+ * A minimized DFA compiled from a list of token rules, used as a generated
+ * lexer core.
+ *
+ * Each rule is a regular expression (see {@link Nfa} for the syntax), and the
+ * rules are compiled together through subset construction and then minimized.
+ * Characters are grouped into equivalence classes of characters that no rule
+ * distinguishes, so the transition table is a flat {@code int} array indexed
+ * by {@code state * classes + class}, and {@link #scan} is a single loop of
+ * table lookups with no backtracking.
+ *
+ * Scanning follows the usual lexer conventions: the longest match wins, and
+ * ties go to the rule that was listed first.
+ */
+public final class Dfa {
+
+    private final int rules;
+    private final int classes;
+    private final int[] asciiClasses;
+    private final int[] boundaries; //sorted starts of each character class
+    private final int[] table;
+    private final int[] accept; //rule accepted before the end of input, or -1
+    private final int[] acceptAtEnd; //rule accepted at the end of input, or -1
+    private final int start;
+    private final int dead;
+
+    private Dfa(int rules, int[] boundaries, int[] table, int[] accept, int[] acceptAtEnd, int start, int dead) {
+        this.rules = rules;
+        this.classes = boundaries.length;
+        this.boundaries = boundaries;
+        this.asciiClasses = new int[128];
+        for (char c = 0; c < 128; c++) {
+            asciiClasses[c] = classOf(boundaries, c);
+        }
+        this.table = table;
+        this.accept = accept;
+        this.acceptAtEnd = acceptAtEnd;
+        this.start = start;
+        this.dead = dead;
+    }
+
+    /**
+     * Compiles the rules into a minimized DFA, where rule {@code i} is matched
+     * by {@code rules[i]}.
+     */
+    public static Dfa compile(String... rules) {
+        return new Builder(Nfa.compile(rules)).build();
+    }
+
+    /**
+     * Finds the longest non-empty match of any rule starting at {@code index}.
+     * If there is a match, the result packs the rule into the upper 32 bits
+     * and the end offset of the match into the lower 32 bits (see {@link
+     * #rule(long)} and {@link #end(long)}); otherwise, the result is -1.
+     */
+    public long scan(CharSequence input, int index) {
+        long result = -1;
+        int state = start;
+        int length = input.length();
+        for (int i = index; ; i++) {
+            if (i == length) {
+                if (acceptAtEnd[state] >= 0 && i > index) {
+                    result = ((long) acceptAtEnd[state] << 32) | i;
+                }
+                return result;
+            }
+            if (accept[state] >= 0 && i > index) {
+                result = ((long) accept[state] << 32) | i;
+            }
+            char c = input.charAt(i);
+            state = table[state * classes + (c < 128 ? asciiClasses[c] : classOf(boundaries, c))];
+            if (state == dead) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the entire input is matched by any rule.
+     */
+    public boolean matches(CharSequence input) {
+        int state = start;
+        for (int i = 0; i < input.length() && state != dead; i++) {
+            char c = input.charAt(i);
+            state = table[state * classes + (c < 128 ? asciiClasses[c] : classOf(boundaries, c))];
+        }
+        return acceptAtEnd[state] >= 0;
+    }
+
+    public static int rule(long match) {
+        return (int) (match >>> 32);
+    }
+
+    public static int end(long match) {
+        return (int) match;
+    }
+
+    public int getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of states, including the dead state.
+     */
+    public int getStates() {
+        return accept.length;
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * Returns the sorted starts of the character classes of the NFA, which are
+     * the ranges of characters that every character set either fully contains
+     * or excludes.
+     */
+    static int[] boundaries(Nfa nfa) {
+        TreeSet<Integer> starts = new TreeSet<>();
+        starts.add(0);
+        for (int[] ranges : nfa.sets()) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                starts.add(ranges[i]);
+                if (ranges[i + 1] < Character.MAX_VALUE) {
+                    starts.add(ranges[i + 1] + 1);
+                }
+            }
+        }
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the character class containing the character.
+     */
+    static int classOf(int[] boundaries, char c) {
+        int low = 0;
+        int high = boundaries.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (boundaries[mid] <= c) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "Dfa{" +
+                "rules=" + rules +
+                ", states=" + getStates() +
+                ", classes=" + classes +
+                '}';
+    }
+
+    /**
+     * Performs subset construction over character classes, followed by
+     * partition refinement to minimize the result.
+     */
+    private static final class Builder {
+
+        private final Nfa nfa;
+        private final int[] boundaries;
+        private final Map<Key, Integer> ids = new HashMap<>();
+        private final List<int[]> states = new ArrayList<>();
+        private final List<int[]> transitions = new ArrayList<>();
+
+        private Builder(Nfa nfa) {
+            this.nfa = nfa;
+            this.boundaries = boundaries(nfa);
+        }
+
+        private Dfa build() {
+            int dead = id(new int[0]);
+            int start = id(nfa.closure(new int[] {nfa.start()}, 1, true, false));
+            int[] moves = new int[nfa.size()];
+            for (int state = 0; state < states.size(); state++) {
+                int[] set = states.get(state);
+                int[] row = new int[boundaries.length];
+                for (int c = 0; c < boundaries.length; c++) {
+                    int count = 0;
+                    for (int s : set) {
+                        if (nfa.kind(s) == Nfa.CHARS && nfa.matches(s, (char) boundaries[c])) {
+                            moves[count++] = nfa.out(s);
+                        }
+                    }
+                    row[c] = count == 0 ? dead : id(nfa.closure(moves, count, false, false));
+                }
+                transitions.add(row);
+            }
+            int[] accept = new int[states.size()];
+            int[] acceptAtEnd = new int[states.size()];
+            for (int state = 0; state < states.size(); state++) {
+                int[] set = states.get(state);
+                accept[state] = accepted(set);
+                int atEnd = Math.min(unsigned(accept[state]),
+                        unsigned(accepted(nfa.closure(set, set.length, false, true))));
+                acceptAtEnd[state] = atEnd == Integer.MAX_VALUE ? -1 : atEnd;
+            }
+            return minimize(accept, acceptAtEnd, start, dead);
+        }
+
+        /**
+         * Returns the highest priority rule accepted by the set, or -1.
+         */
+        private int accepted(int[] set) {
+            int rule = -1;
+            for (int s : set) {
+                if (nfa.kind(s) == Nfa.ACCEPT) {
+                    rule = Math.min(unsigned(rule), nfa.rule(s));
+                }
+            }
+            return rule;
+        }
+
+        private int id(int[] set) {
+            return ids.computeIfAbsent(new Key(set), key -> {
+                states.add(set);
+                return states.size() - 1;
+            });
+        }
+
+        /**
+         * Merges equivalent states by repeatedly splitting blocks of states
+         * whose transitions lead to different blocks, starting from blocks
+         * that accept the same rules.
+         */
+        private Dfa minimize(int[] accept, int[] acceptAtEnd, int start, int dead) {
+            int count = states.size();
+            int classes = boundaries.length;
+            int[] blocks = new int[count];
+            int size = partition(count, state -> new Key(new int[] {accept[state], acceptAtEnd[state]}), blocks);
+            while (true) {
+                int[] current = blocks.clone();
+                int refined = partition(count, state -> {
+                    int[] signature = new int[classes + 1];
+                    signature[0] = current[state];
+                    int[] row = transitions.get(state);
+                    for (int c = 0; c < classes; c++) {
+                        signature[c + 1] = current[row[c]];
+                    }
+                    return new Key(signature);
+                }, blocks);
+                if (refined == size) {
+                    break;
+                }
+                size = refined;
+            }
+            int[] table = new int[size * classes];
+            int[] minAccept = new int[size];
+            int[] minAcceptAtEnd = new int[size];
+            for (int state = 0; state < count; state++) {
+                int block = blocks[state];
+                int[] row = transitions.get(state);
+                for (int c = 0; c < classes; c++) {
+                    table[block * classes + c] = blocks[row[c]];
+                }
+                minAccept[block] = accept[state];
+                minAcceptAtEnd[block] = acceptAtEnd[state];
+            }
+            return new Dfa(nfa.getRules(), boundaries, table, minAccept, minAcceptAtEnd, blocks[start], blocks[dead]);
+        }
+
+        private static int partition(int count, IntFunction<Key> signature, int[] blocks) {
+            Map<Key, Integer> keys = new HashMap<>();
+            for (int state = 0; state < count; state++) {
+                blocks[state] = keys.computeIfAbsent(signature.apply(state), key -> keys.size());
+            }
+            return keys.size();
+        }
+
+        /**
+         * Maps -1 to the largest int so that {@code Math.min} prefers any rule.
+         */
+        private static int unsigned(int rule) {
+            return rule == -1 ? Integer.MAX_VALUE : rule;
+        }
+
+    }
+
+    static final class Key {
+
+        private final int[] values;
+        private final int hash;
+
+        Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(values, ((Key) obj).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package plc.interpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads top-level Whisp forms one at a time from a stream of tokens.
+ *
+ * Tokens are pulled from the underlying iterator only until the next form is
+ * complete, so a form can be evaluated as soon as its closing bracket arrives
+ * and is unreachable once the caller is done with it. Memory is therefore
+ * bounded by the largest form rather than the whole program, and the tokens
+ * may come from a source that is still being written (such as piped input).
+ *
+ * Forms are built with the same explicit-stack shift-reduce algorithm as
+ * {@link Parser#parseIterative(List)}, so nesting depth is not limited by the
+ * Java stack. Each term spans from its opening bracket to its closing one.
+ */
+public final class FormReader implements Iterator<Ast> {
+
+    private final Iterator<Token> tokens;
+
+    public FormReader(Iterator<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Returns true if there is another form, which is the case if there are
+     * any tokens left.
+     */
+    @Override
+    public boolean hasNext() {
+        return tokens.hasNext();
+    }
+
+    /**
+     * Reads the next top-level form, throwing a {@link ParseException} if the
+     * tokens do not form a complete term.
+     */
+    @Override
+    public Ast next() {
+        if (!tokens.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Deque<OpenTerm> stack = new ArrayDeque<>();
+        while (tokens.hasNext()) {
+            Token token = tokens.next();
+            String literal = token.getLiteral();
+            if (token.getType() == Token.Type.OPERATOR && (literal.equals("(") || literal.equals("["))) {
+                Token name = tokens.hasNext() ? tokens.next() : null;
+                if (name == null || name.getType() != Token.Type.IDENTIFIER) {
+                    throw new ParseException("Expected an identifier after the opening bracket.", token.getIndex());
+                }
+                stack.push(new OpenTerm(name.getLiteral(), literal.equals("(") ? ")" : "]", token.getIndex()));
+            } else if (token.getType() == Token.Type.OPERATOR && (literal.equals(")") || literal.equals("]"))) {
+                if (stack.isEmpty() || !stack.peek().close.equals(literal)) {
+                    throw new ParseException("Unexpected closing bracket.", token.getIndex());
+                }
+                OpenTerm term = stack.pop();
+                Ast.Term ast = new Ast.Term(term.name, term.args);
+                ast.setSpan(Span.of(term.index, token.getIndex() + 1));
+                if (stack.isEmpty()) {
+                    return ast;
+                }
+                stack.peek().args.add(ast);
+            } else if (stack.isEmpty()) {
+                throw new ParseException("Expected opening bracket or parenthesis", token.getIndex());
+            } else if (token.getType() == Token.Type.NUMBER) {
+                stack.peek().args.add(Parser.number(token));
+            } else if (token.getType() == Token.Type.IDENTIFIER) {
+                stack.peek().args.add(Parser.identifier(token));
+            } else if (token.getType() == Token.Type.STRING) {
+                stack.peek().args.add(Parser.string(token));
+            } else {
+                throw new ParseException("Unexpected operator.", token.getIndex());
+            }
+        }
+        throw new ParseException("Expected closing bracket.", stack.peek().index);
+    }
+
+    /**
+     * A term whose closing bracket has not been reached yet.
+     */
+    private static final class OpenTerm {
+
+        private final String name;
+        private final String close;
+        private final int index;
+        private final List<Ast> args = new ArrayList<>();
+
+        private OpenTerm(String name, String close, int index) {
+            this.name = name;
+            this.close = close;
+            this.index = index;
+        }
+
+    }
+
+}
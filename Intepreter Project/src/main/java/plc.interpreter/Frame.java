@@ -0,0 +1,48 @@
+package plc.interpreter;
+
+/**
+ * The state a compiled {@link Node} executes in: the values of the lexical
+ * variables of a {@link Node.Body}, and the global {@link Scope} for every
+ * other name.
+ *
+ * Lexical variables are resolved to an index into the slots when the node is
+ * compiled, so reading one is an array load rather than a hash lookup at
+ * each level of a scope chain. Only globals, which can be defined at any
+ * time, are looked up by name. Whisp has no binding forms yet, so there is a
+ * single level of variables and frames are not nested.
+ */
+public final class Frame {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final Scope scope;
+    private final Object[] slots;
+
+    /**
+     * Creates a frame without lexical variables.
+     */
+    public Frame(Scope scope) {
+        this(scope, EMPTY);
+    }
+
+    /**
+     * Creates a frame holding the given slots, which are used directly, not
+     * copied.
+     */
+    public Frame(Scope scope, Object[] slots) {
+        this.scope = scope;
+        this.slots = slots;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the value in the slot {@code index}.
+     */
+    public Object get(int index) {
+        return slots[index];
+    }
+
+}
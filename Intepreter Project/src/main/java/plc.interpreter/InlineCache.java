@@ -0,0 +1,146 @@
+package plc.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * Caches the binding of a global name at one site in a compiled {@link
+ * Node}, such as the function a call invokes, so a hot loop doesn't look the
+ * name up through the scope chain on every iteration.
+ *
+ * Each entry holds the scope the site executed in, the {@link Scope.Binding}
+ * the name resolved to, and the {@link Scope#getVersion() version} of the
+ * scope's tree at the time. Redefining or setting a name updates its binding
+ * in place, so the entry sees the new value without being invalidated; only
+ * a definition shadowing a name changes the version. An entry whose scope
+ * and version both match is therefore still correct, and a hit costs a
+ * single guard check and a field load. Scopes of other interpreters have
+ * their own versions and never invalidate each other's entries.
+ *
+ * A site starts {@link State#UNINITIALIZED uninitialized}, becomes {@link
+ * State#MONOMORPHIC monomorphic} with one entry, and {@link
+ * State#POLYMORPHIC polymorphic} when it executes in more than one scope, up
+ * to {@link #LIMIT} of them. Beyond that it is {@link State#MEGAMORPHIC
+ * megamorphic}: the entries are dropped and every execution is a lookup,
+ * counted as a miss. The hit and miss counters are for tuning, and are not
+ * synchronized.
+ */
+public final class InlineCache {
+
+    /**
+     * The number of scopes a polymorphic site caches before becoming
+     * megamorphic.
+     */
+    public static final int LIMIT = 4;
+
+    public enum State {
+        UNINITIALIZED,
+        MONOMORPHIC,
+        POLYMORPHIC,
+        MEGAMORPHIC
+    }
+
+    private static final Entry[] NONE = new Entry[0];
+
+    private final String name;
+    private Entry[] entries = NONE;
+    private boolean megamorphic = false;
+    private long hits = 0;
+    private long misses = 0;
+
+    InlineCache(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        if (megamorphic) {
+            return State.MEGAMORPHIC;
+        }
+        switch (entries.length) {
+            case 0: return State.UNINITIALIZED;
+            case 1: return State.MONOMORPHIC;
+            default: return State.POLYMORPHIC;
+        }
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the value of the name in the scope, from the cache if possible.
+     */
+    Object get(Scope scope) throws EvalException {
+        long version = scope.getVersion();
+        Entry[] entries = this.entries;
+        for (Entry entry : entries) {
+            if (entry.scope == scope && entry.version == version) {
+                hits++;
+                return entry.binding.get();
+            }
+        }
+        misses++;
+        Scope.Binding binding = scope.find(name);
+        if (binding == null) {
+            return scope.lookup(name); //throws
+        } else if (!megamorphic) {
+            update(entries, new Entry(scope, version, binding));
+        }
+        return binding.get();
+    }
+
+    /**
+     * Replaces the entry for the scope, or adds one if there isn't one yet.
+     * The array is copied, so a racing reader sees a complete set of entries.
+     */
+    private void update(Entry[] entries, Entry entry) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].scope == entry.scope) {
+                Entry[] updated = entries.clone();
+                updated[i] = entry;
+                this.entries = updated;
+                return;
+            }
+        }
+        if (entries.length == LIMIT) {
+            this.entries = NONE;
+            this.megamorphic = true;
+        } else {
+            Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+            updated[entries.length] = entry;
+            this.entries = updated;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InlineCache{" +
+                "name='" + name + '\'' +
+                ", state=" + getState() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+
+    private static final class Entry {
+
+        private final Scope scope;
+        private final long version;
+        private final Scope.Binding binding;
+
+        private Entry(Scope scope, long version, Scope.Binding binding) {
+            this.scope = scope;
+            this.version = version;
+            this.binding = binding;
+        }
+
+    }
+
+}
@@ -1,11 +1,10 @@
 package plc.interpreter;
 
 import java.io.PrintWriter;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public final class Interpreter {
 
@@ -25,6 +24,7 @@ public final class Interpreter {
 
     public final PrintWriter out;
     public Scope scope;
+    private Frame frame;
 
     public Interpreter(PrintWriter out, Scope scope) {
         this.out = out;
@@ -50,14 +50,88 @@ public final class Interpreter {
         }
     }
 
+    /**
+     * Compiles the AST into a {@link Node} tree, which can be executed any
+     * number of times with {@link #execute(Node)}. This is worth it for code
+     * which runs repeatedly, such as the body of a loop.
+     */
+    public Node compile(Ast ast) {
+        return Node.compile(ast);
+    }
+
+    /**
+     * Compiles the AST with the given names as lexical variables, whose
+     * values are passed to {@link #execute(Node.Body, Object...)}. Reading one
+     * is an array load instead of a lookup in the scope.
+     */
+    public Node.Body compile(Ast ast, List<String> variables) throws EvalException {
+        return Node.compile(ast, variables);
+    }
+
+    /**
+     * Executes a compiled node in the current scope, giving the same result
+     * as evaluating the AST it was compiled from.
+     */
+    public Object execute(Node node) {
+        return node.execute(frame());
+    }
+
+    /**
+     * Executes a compiled body with the arguments as the values of its
+     * variables, in order.
+     */
+    public Object execute(Node.Body body, Object... arguments) throws EvalException {
+        return body.getBody().execute(body.enter(frame(), arguments.clone()));
+    }
+
+    private Frame frame() {
+        if (frame == null || frame.getScope() != scope) {
+            frame = new Frame(scope);
+        }
+        return frame;
+    }
+
+    /**
+     * Evaluates each form as soon as it is read, returning the result of the
+     * last one or {@link #VOID} if there were none. Combined with a {@link
+     * FormReader}, earlier forms run (and their output appears) before later
+     * ones have even been read, and each form can be collected once it has
+     * been evaluated.
+     */
+    public Object evalAll(Iterator<Ast> forms) {
+        Object result = VOID;
+        while (forms.hasNext()) {
+            result = eval(forms.next());
+        }
+        return result;
+    }
+
     /**
      * Evaluations the Term ast, which returns the value resulting by calling
-     * the function stored under the term's name in the current scope. You will
-     * need to check that the type of the value is a {@link Function}, and cast
-     * to the type {@code Function<List<Ast>, Object>}.
+     * the function stored under the term's name in the current scope. A
+     * {@link Builtin} is called with the evaluated arguments, and otherwise the
+     * value must be a special form of type {@code Function<List<Ast>, Object>},
+     * which is called with the ASTs.
      */
     private Object eval(Ast.Term ast) {
-        return requireType(Function.class, scope.lookup(ast.getName())).apply(ast.getArgs());
+        Object function = scope.lookup(ast.getName());
+        if (function instanceof Builtin) {
+            Builtin builtin = (Builtin) function;
+            List<Ast> args = ast.getArgs();
+            switch (args.size()) {
+                case 0: return builtin.call0();
+                case 1: return builtin.call1(eval(args.get(0)));
+                case 2: return builtin.call2(eval(args.get(0)), eval(args.get(1)));
+                case 3: return builtin.call3(eval(args.get(0)), eval(args.get(1)), eval(args.get(2)));
+                default:
+                    Object[] values = new Object[args.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = eval(args.get(i));
+                    }
+                    return builtin.callN(values);
+            }
+        }
+        return requireType(Function.class, function).apply(ast.getArgs());
     }
 
     /**
@@ -71,8 +145,8 @@ public final class Interpreter {
     /**
      * Evaluates the NumberLiteral ast, which returns the stored number value.
      */
-    private BigDecimal eval(Ast.NumberLiteral ast) {
-        return ast.getValue();
+    private Number eval(Ast.NumberLiteral ast) {
+        return ast.getNumber();
     }
 
     /**
@@ -87,98 +161,136 @@ public final class Interpreter {
      * library.
      */
     private void init() {
-        scope.define("print", (Function<List<Ast>, Object>) args -> {
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            evaluated.forEach(out::print);
-            out.println();
-            return VOID;
-        });
-        scope.define("true", (Function<List<Ast>, Object>) args -> {
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            return true;
-        });
-        scope.define("false", (Function<List<Ast>, Object>) args -> {
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            return false;
-        });
-        scope.define("equals?", (Function<List<Ast>, Object>) args -> {
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            return false;
-        });
-
-        scope.define("+", (Function<List<Ast>, Object>) args -> {
-            //+123
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
+        scope.define("print", new Builtin() {
 
-            if (evaluated.size() == 0) {
-                return BigDecimal.valueOf(0);
+            @Override
+            public Object call0() {
+                out.println();
+                return VOID;
             }
-            BigDecimal mybd = new BigDecimal(0);
 
-            for (int i = 0; i < evaluated.size(); i++) {
-                mybd = mybd.add((BigDecimal) evaluated.get(i));
+            @Override
+            public Object call1(Object arg) {
+                out.println(arg);
+                return VOID;
             }
 
-            return mybd;
-        });
-        scope.define("-", (Function<List<Ast>, Object>) args -> {
-            //+123
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
+            @Override
+            public Object call2(Object arg1, Object arg2) {
+                out.print(arg1);
+                out.println(arg2);
+                return VOID;
+            }
 
-            if (evaluated.size() == 0) {
-                throw new EvalException("error");
+            @Override
+            public Object call3(Object arg1, Object arg2, Object arg3) {
+                out.print(arg1);
+                out.print(arg2);
+                out.println(arg3);
+                return VOID;
             }
 
-            if (evaluated.size() == 1) {
-                BigDecimal bd = new BigDecimal(-1);
-                bd = bd.multiply((BigDecimal) evaluated.get(0));
-                return bd;
+            @Override
+            public Object callN(Object[] args) {
+                for (Object arg : args) {
+                    out.print(arg);
+                }
+                out.println();
+                return VOID;
             }
 
-            BigDecimal mybd = (BigDecimal) evaluated.get(0);
+        });
+        scope.define("true", constant(true));
+        scope.define("false", constant(false));
+        scope.define("equals?", constant(false));
+        scope.define("+", arithmetic("+", 0L, 0L, Numbers::add));
+        scope.define("-", arithmetic("-", null, 0L, Numbers::subtract));
+        scope.define("*", arithmetic("*", 1L, 1L, Numbers::multiply));
+        scope.define("/", arithmetic("/", null, 1L, Numbers::divide));
+        //TODO: Additional standard library functions
+    }
+
+    /**
+     * Creates a function which ignores its (evaluated) arguments and returns
+     * the value.
+     */
+    private static Builtin constant(Object value) {
+        return new Builtin() {
 
-            for (int i = 1; i < evaluated.size(); i++) {
-                mybd = mybd.subtract((BigDecimal) evaluated.get(i));
+            @Override
+            public Object call0() {
+                return value;
             }
 
-            return mybd;
-        });
-        scope.define("*", (Function<List<Ast>, Object>) args -> {
-            //*123
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
+            @Override
+            public Object call1(Object arg) {
+                return value;
+            }
 
-            if (evaluated.size() == 0) {
-                return BigDecimal.valueOf(1);
+            @Override
+            public Object call2(Object arg1, Object arg2) {
+                return value;
             }
 
-            BigDecimal mybd = new BigDecimal(1);
+            @Override
+            public Object call3(Object arg1, Object arg2, Object arg3) {
+                return value;
+            }
 
-            for (int i = 0; i < evaluated.size(); i++) {
-                mybd = mybd.multiply((BigDecimal) evaluated.get(i));
+            @Override
+            public Object callN(Object[] args) {
+                return value;
             }
 
-            return mybd;
-        });
-        scope.define("/", (Function<List<Ast>, Object>) args -> {
-            // /123
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
+        };
+    }
 
-            if (evaluated.size() == 0) {
-                throw new EvalException("error");
+    /**
+     * Creates an arithmetic function which folds the operator over its
+     * arguments from the left. Without arguments it returns the identity, if
+     * there is one, and a single argument is combined with the unit (so
+     * {@code (- x)} is {@code (- 0 x)}).
+     */
+    private static Builtin arithmetic(String name, Number identity, Number unit, BinaryOperator<Number> operator) {
+        return new Builtin() {
+
+            @Override
+            public Object call0() {
+                if (identity == null) {
+                    throw new EvalException("Expected at least one argument to " + name + ".");
+                }
+                return identity;
             }
 
+            @Override
+            public Object call1(Object arg) {
+                return operator.apply(unit, requireType(Number.class, arg));
+            }
 
-            BigDecimal mybd = new BigDecimal(1);
+            @Override
+            public Object call2(Object arg1, Object arg2) {
+                return operator.apply(requireType(Number.class, arg1), requireType(Number.class, arg2));
+            }
 
-            for (int i = 0; i < evaluated.size(); i++) {
-                Float num = (Float) evaluated.get(i);
-                BigDecimal bd = new BigDecimal(Float.toString(num));;
-                mybd = mybd.divide(bd, RoundingMode.HALF_EVEN);
+            @Override
+            public Object call3(Object arg1, Object arg2, Object arg3) {
+                Number result = operator.apply(requireType(Number.class, arg1), requireType(Number.class, arg2));
+                return operator.apply(result, requireType(Number.class, arg3));
             }
 
-            return mybd;
-        });
-        //TODO: Additional standard library functions
+            @Override
+            public Object callN(Object[] args) {
+                if (args.length < 2) {
+                    return args.length == 0 ? call0() : call1(args[0]);
+                }
+                Number result = requireType(Number.class, args[0]);
+                for (int i = 1; i < args.length; i++) {
+                    result = operator.apply(result, requireType(Number.class, args[i]));
+                }
+                return result;
+            }
+
+        };
     }
 
     /**
@@ -0,0 +1,138 @@
+package plc.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A DFA which is built from an {@link Nfa} while matching, rather than all at
+ * once like {@link Dfa}.
+ *
+ * Each DFA state is the set of NFA states the input could be in, and the
+ * transition for a character class is only computed the first time it is
+ * taken. After that, each character of the input costs one table lookup, and
+ * even a new transition is bounded by the size of the NFA, so matching is
+ * always linear in the length of the input and never backtracks. Patterns
+ * whose full DFA would be large (such as long alternations of counted
+ * repetitions) only ever build the states the inputs actually reach, and the
+ * cache is discarded and rebuilt if it grows past {@link #MAX_STATES}.
+ *
+ * Matching is thread-safe. Reading a transition is lock-free, and building a
+ * new one synchronizes on the DFA.
+ */
+public final class LazyDfa {
+
+    static final int MAX_STATES = 4096;
+
+    private final Nfa nfa;
+    private final int[] boundaries;
+    private final int[] asciiClasses = new int[128];
+    private final Map<Dfa.Key, State> states = new HashMap<>();
+    private final int[] moves;
+    private volatile State start;
+
+    public LazyDfa(Nfa nfa) {
+        this.nfa = nfa;
+        this.boundaries = Dfa.boundaries(nfa);
+        for (char c = 0; c < 128; c++) {
+            asciiClasses[c] = Dfa.classOf(boundaries, c);
+        }
+        this.moves = new int[nfa.size()];
+        synchronized (this) {
+            this.start = reset();
+        }
+    }
+
+    /**
+     * Compiles the patterns into a lazy DFA. See {@link Nfa} for the syntax.
+     */
+    public static LazyDfa compile(String... patterns) {
+        return new LazyDfa(Nfa.compile(patterns));
+    }
+
+    /**
+     * Returns true if the entire input is matched.
+     */
+    public boolean matches(CharSequence input) {
+        State state = start;
+        for (int i = 0; i < input.length(); i++) {
+            if (state.dead) {
+                return false;
+            }
+            char c = input.charAt(i);
+            int cls = c < 128 ? asciiClasses[c] : Dfa.classOf(boundaries, c);
+            State next = state.next.get(cls);
+            state = next != null ? next : step(state, cls);
+        }
+        return state.acceptAtEnd;
+    }
+
+    /**
+     * Returns the number of states currently cached.
+     */
+    public synchronized int getStates() {
+        return states.size();
+    }
+
+    private synchronized State step(State state, int cls) {
+        State next = state.next.get(cls);
+        if (next == null) {
+            int count = 0;
+            for (int s : state.set) {
+                if (nfa.kind(s) == Nfa.CHARS && nfa.matches(s, (char) boundaries[cls])) {
+                    moves[count++] = nfa.out(s);
+                }
+            }
+            if (states.size() >= MAX_STATES) {
+                start = reset();
+            }
+            next = state(nfa.closure(moves, count, false, false));
+            state.next.set(cls, next);
+        }
+        return next;
+    }
+
+    /**
+     * Discards every cached state, returning the new start state. States that
+     * are already in use stay valid, but are no longer shared.
+     */
+    private State reset() {
+        states.clear();
+        return state(nfa.closure(new int[] {nfa.start()}, 1, true, false));
+    }
+
+    private State state(int[] set) {
+        return states.computeIfAbsent(new Dfa.Key(set), key -> {
+            boolean accept = false;
+            for (int s : nfa.closure(set, set.length, false, true)) {
+                accept |= nfa.kind(s) == Nfa.ACCEPT;
+            }
+            return new State(set, accept, boundaries.length);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "LazyDfa{" +
+                "states=" + getStates() +
+                ", classes=" + boundaries.length +
+                '}';
+    }
+
+    private static final class State {
+
+        private final int[] set;
+        private final boolean dead;
+        private final boolean acceptAtEnd;
+        private final AtomicReferenceArray<State> next;
+
+        private State(int[] set, boolean acceptAtEnd, int classes) {
+            this.set = set;
+            this.dead = set.length == 0;
+            this.acceptAtEnd = acceptAtEnd;
+            this.next = new AtomicReferenceArray<>(classes);
+        }
+
+    }
+
+}
@@ -1,8 +1,7 @@
 package plc.interpreter;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -17,11 +16,38 @@ import java.util.List;
  *
  * The {@link #peek(String...)} and {@link #match(String...)} functions are
  * helpers, they're not necessary but their use will make the implementation a
- * lot easier. Regex isn't the most performant way to go but it gets the job
- * done, and the focus here is on the concept.
+ * lot easier. Each pattern is a single-character regex, which is looked up as
+ * a {@link CharClass} so a character is checked against a precomputed table
+ * instead of compiling and matching the regex every time.
  */
 public final class Lexer {
 
+    private static final String IDENTIFIER_START = "A-Za-z_+\\-*/:!?<>=";
+    private static final String STRING_BODY = "\"([^\\\\\"]|\\\\[bnrt'\"\\\\])*";
+
+    /**
+     * The token rules of Whisp in priority order, for {@link
+     * #lexGenerated(String)}. At every position the longest match of any
+     * rule is taken, with ties going to the rule listed first, so {@code -1}
+     * is a number rather than an identifier and a lone {@code "} is an
+     * unterminated string rather than an operator.
+     */
+    private static final Rule[] RULES = {
+            Rule.skip("[ \\t\\n\\r\\f]+"),
+            Rule.token(Token.Type.NUMBER, "[+\\-]?[0-9]+(\\.[0-9]+)?"),
+            Rule.token(Token.Type.IDENTIFIER, "[" + IDENTIFIER_START + "][" + IDENTIFIER_START + "0-9.]*"),
+            Rule.token(Token.Type.STRING, STRING_BODY + "\""),
+            Rule.error("Invalid Escape Sequence", STRING_BODY + "\\\\"),
+            Rule.error("Unterminated String", STRING_BODY),
+            Rule.token(Token.Type.OPERATOR, "[^ \\t\\n\\r\\f]")
+    };
+
+    /**
+     * The {@link #RULES} compiled into a single minimized {@link Dfa}, the
+     * same engine as the compiler's {@code GeneratedLexer}.
+     */
+    static final Dfa GENERATED = Dfa.compile(Arrays.stream(RULES).map(rule -> rule.regex).toArray(String[]::new));
+
      final CharStream chars;
 
      Lexer(String input) {
@@ -53,6 +79,27 @@ public final class Lexer {
         return new Lexer(input).lex();
     }
 
+    /**
+     * Lexes the input with the {@link #GENERATED} DFA instead of {@link
+     * #lexToken()}, which is a single loop of table lookups per token.
+     */
+    public static List<Token> lexGenerated(String input) throws ParseException {
+        List<Token> tokens = new ArrayList<>();
+        int index = 0;
+        while (index < input.length()) {
+            long match = GENERATED.scan(input, index); //every character is matched by some rule
+            Rule rule = RULES[Dfa.rule(match)];
+            int end = Dfa.end(match);
+            if (rule.error != null) {
+                throw new ParseException(rule.error, end);
+            } else if (rule.type != null) {
+                tokens.add(new Token(rule.type, input.substring(index, end), index));
+            }
+            index = end;
+        }
+        return tokens;
+    }
+
     /**
      * Repeatedly lexes the next token using {@link #lexToken()} until the end
      * of the input is reached, returning the list of tokens lexed. This should
@@ -125,9 +172,7 @@ public final class Lexer {
          int peekIndex = 0;
 
              for(String patString : patterns){
-                 Pattern pattern = Pattern.compile(patString);
-                     Matcher matcher = pattern.matcher(chars.input.valueOf(chars.get(peekIndex)));
-                     matches = matcher.matches();
+                     matches = CharClass.of(patString).contains(chars.get(peekIndex));
                      if(matches == false){
                          return matches;
                      }
@@ -151,12 +196,7 @@ public final class Lexer {
      boolean match(String... patterns) {
          boolean matches = false;
          for(String patString : patterns){
-             Pattern pattern = Pattern.compile(patString);
-             Matcher matcher = pattern.matcher(chars.input.valueOf(chars.get(0)));
-             matches = matcher.matches();
-             System.out.print(chars.get(0) + " ");
-             System.out.print("index " + chars.index + " ");
-             System.out.println(matches);
+             matches = CharClass.of(patString).contains(chars.get(0));
              if(matches == false && chars.input.length() > patterns.length){
 
                  return matches;
@@ -175,7 +215,6 @@ public final class Lexer {
                  continue;
              } else if(matches == true){
                  chars.advance();
-                 System.out.println("advanced");
              }
          }
          return matches;
@@ -250,4 +289,35 @@ public final class Lexer {
 
     }
 
+    /**
+     * A rule of the generated lexer, which produces a token of its type, is
+     * skipped if it has neither a type nor an error, or throws a {@link
+     * ParseException} with its error.
+     */
+    private static final class Rule {
+
+        private final String regex;
+        private final Token.Type type;
+        private final String error;
+
+        private Rule(String regex, Token.Type type, String error) {
+            this.regex = regex;
+            this.type = type;
+            this.error = error;
+        }
+
+        private static Rule token(Token.Type type, String regex) {
+            return new Rule(regex, type, null);
+        }
+
+        private static Rule skip(String regex) {
+            return new Rule(regex, null, null);
+        }
+
+        private static Rule error(String message, String regex) {
+            return new Rule(regex, null, message);
+        }
+
+    }
+
 }
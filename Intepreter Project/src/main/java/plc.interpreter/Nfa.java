@@ -0,0 +1,590 @@
+package plc.interpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Thompson NFA compiled from one or more regular expressions, each of which
+ * is a separate rule that ends in its own accepting state.
+ *
+ * The supported syntax is the subset used by {@link Regex} and the lexers:
+ * literals and escapes, character classes (with ranges, negation and the
+ * {@code \d \s \w} shorthands), {@code .}, groups (capturing, non-capturing
+ * and named, although nothing is captured), alternation, the {@code * + ?}
+ * and {@code {n,m}} quantifiers (lazy quantifiers are accepted and match the
+ * same strings), and the {@code ^} and {@code $} anchors. Anything else, such
+ * as backreferences or lookaround, throws an {@link IllegalArgumentException}.
+ *
+ * The NFA itself is only a graph of states; {@link Dfa} compiles it into a
+ * transition table, and {@link #closure} is the building block for both that
+ * and simulating the NFA directly.
+ */
+public final class Nfa {
+
+    static final int CHARS = 0;
+    static final int SPLIT = 1;
+    static final int EMPTY = 2;
+    static final int LINE_START = 3;
+    static final int LINE_END = 4;
+    static final int ACCEPT = 5;
+
+    private int[] kinds = new int[64];
+    private int[] outs = new int[64];
+    private int[] alts = new int[64];
+    private int[] args = new int[64];
+    private int size = 0;
+    private final List<int[]> sets = new ArrayList<>();
+    private int start;
+    private final int rules;
+
+    private int[] marks = new int[0];
+    private int generation = 0;
+
+    private Nfa(int rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Compiles the patterns into a single NFA, where rule {@code i} is
+     * accepted by matching {@code patterns[i]}.
+     */
+    public static Nfa compile(String... patterns) {
+        Nfa nfa = new Nfa(patterns.length);
+        int start = -1;
+        for (int i = patterns.length - 1; i >= 0; i--) {
+            Node node = new Parser(patterns[i]).parse();
+            int rule = node.compile(nfa, nfa.state(ACCEPT, -1, -1, i));
+            start = start == -1 ? rule : nfa.state(SPLIT, rule, start, 0);
+        }
+        nfa.start = start == -1 ? nfa.state(EMPTY, -1, -1, 0) : start;
+        nfa.marks = new int[nfa.size];
+        return nfa;
+    }
+
+    public int getRules() {
+        return rules;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int kind(int state) {
+        return kinds[state];
+    }
+
+    int out(int state) {
+        return outs[state];
+    }
+
+    /**
+     * Returns the rule accepted by an ACCEPT state.
+     */
+    int rule(int state) {
+        return args[state];
+    }
+
+    /**
+     * Returns the character ranges matched by a CHARS state, as sorted pairs
+     * of inclusive bounds.
+     */
+    int[] ranges(int state) {
+        return sets.get(args[state]);
+    }
+
+    /**
+     * Returns every distinct character set used by the NFA.
+     */
+    List<int[]> sets() {
+        return sets;
+    }
+
+    /**
+     * Returns true if a CHARS state matches the character.
+     */
+    boolean matches(int state, char c) {
+        return contains(sets.get(args[state]), c);
+    }
+
+    /**
+     * Follows the empty transitions from the given states, returning the
+     * sorted set of CHARS, ACCEPT and (unless {@code atEnd}) LINE_END states
+     * that are reached. LINE_START transitions are only followed if {@code
+     * atStart}, and LINE_END transitions only if {@code atEnd}.
+     */
+    int[] closure(int[] states, int count, boolean atStart, boolean atEnd) {
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+        int[] stack = new int[count + 2 * size];
+        int[] result = new int[size];
+        int found = 0;
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            stack[top++] = states[i];
+        }
+        while (top > 0) {
+            int state = stack[--top];
+            if (state < 0 || marks[state] == generation) {
+                continue;
+            }
+            marks[state] = generation;
+            switch (kinds[state]) {
+                case SPLIT:
+                    stack[top++] = alts[state];
+                    stack[top++] = outs[state];
+                    break;
+                case EMPTY:
+                    stack[top++] = outs[state];
+                    break;
+                case LINE_START:
+                    if (atStart) {
+                        stack[top++] = outs[state];
+                    }
+                    break;
+                case LINE_END:
+                    if (atEnd) {
+                        stack[top++] = outs[state];
+                    } else {
+                        result[found++] = state;
+                    }
+                    break;
+                default:
+                    result[found++] = state;
+            }
+        }
+        int[] closure = Arrays.copyOf(result, found);
+        Arrays.sort(closure);
+        return closure;
+    }
+
+    private int state(int kind, int out, int alt, int arg) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            outs = Arrays.copyOf(outs, size * 2);
+            alts = Arrays.copyOf(alts, size * 2);
+            args = Arrays.copyOf(args, size * 2);
+        }
+        kinds[size] = kind;
+        outs[size] = out;
+        alts[size] = alt;
+        args[size] = arg;
+        return size++;
+    }
+
+    private int set(int[] ranges) {
+        for (int i = 0; i < sets.size(); i++) {
+            if (Arrays.equals(sets.get(i), ranges)) {
+                return i;
+            }
+        }
+        sets.add(ranges);
+        return sets.size() - 1;
+    }
+
+    static boolean contains(int[] ranges, char c) {
+        for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+            if (c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalizes a list of inclusive ranges by sorting and merging them.
+     */
+    static int[] normalize(int[] ranges) {
+        int pairs = ranges.length / 2;
+        long[] sorted = new long[pairs];
+        for (int i = 0; i < pairs; i++) {
+            sorted[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+        }
+        Arrays.sort(sorted);
+        int[] result = new int[ranges.length];
+        int count = 0;
+        for (long range : sorted) {
+            int low = (int) (range >>> 32);
+            int high = (int) range;
+            if (count > 0 && low <= result[count - 1] + 1) {
+                result[count - 1] = Math.max(result[count - 1], high);
+            } else {
+                result[count++] = low;
+                result[count++] = high;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the complement of normalized ranges within the char range.
+     */
+    static int[] negate(int[] ranges) {
+        int[] result = new int[ranges.length + 2];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[count++] = next;
+                result[count++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            result[count++] = next;
+            result[count++] = Character.MAX_VALUE;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static abstract class Node {
+
+        /**
+         * Adds the states for this node to the NFA, returning the state that
+         * starts it. Matching the node continues at {@code next}.
+         */
+        abstract int compile(Nfa nfa, int next);
+
+    }
+
+    private static final class Chars extends Node {
+
+        private final int[] ranges;
+
+        private Chars(int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        int compile(Nfa nfa, int next) {
+            return nfa.state(CHARS, next, -1, nfa.set(ranges));
+        }
+
+    }
+
+    private static final class Anchor extends Node {
+
+        private final int kind;
+
+        private Anchor(int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        int compile(Nfa nfa, int next) {
+            return nfa.state(kind, next, -1, 0);
+        }
+
+    }
+
+    private static final class Sequence extends Node {
+
+        private final List<Node> nodes;
+
+        private Sequence(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        int compile(Nfa nfa, int next) {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                next = nodes.get(i).compile(nfa, next);
+            }
+            return nodes.isEmpty() ? nfa.state(EMPTY, next, -1, 0) : next;
+        }
+
+    }
+
+    private static final class Alternation extends Node {
+
+        private final List<Node> nodes;
+
+        private Alternation(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        int compile(Nfa nfa, int next) {
+            int start = nodes.get(nodes.size() - 1).compile(nfa, next);
+            for (int i = nodes.size() - 2; i >= 0; i--) {
+                start = nfa.state(SPLIT, nodes.get(i).compile(nfa, next), start, 0);
+            }
+            return start;
+        }
+
+    }
+
+    private static final class Repeat extends Node {
+
+        private final Node node;
+        private final int min;
+        private final int max; //-1 if unbounded
+
+        private Repeat(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        int compile(Nfa nfa, int next) {
+            int tail;
+            if (max == -1) {
+                tail = nfa.state(SPLIT, -1, next, 0);
+                nfa.outs[tail] = node.compile(nfa, tail);
+            } else {
+                tail = next;
+                for (int i = min; i < max; i++) {
+                    tail = nfa.state(SPLIT, node.compile(nfa, tail), next, 0);
+                }
+            }
+            for (int i = 0; i < min; i++) {
+                tail = node.compile(nfa, tail);
+            }
+            return tail;
+        }
+
+    }
+
+    /**
+     * A recursive descent parser for the supported regex syntax.
+     */
+    private static final class Parser {
+
+        private static final int[] DIGIT = {'0', '9'};
+        private static final int[] SPACE = normalize(new int[] {'\t', '\r', ' ', ' '});
+        private static final int[] WORD = normalize(new int[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'});
+        private static final int[] DOT = negate(normalize(new int[] {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'}));
+
+        private final String pattern;
+        private int index = 0;
+
+        private Parser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        private Node parse() {
+            Node node = parseAlternation();
+            if (index != pattern.length()) {
+                throw error("Unmatched closing parenthesis");
+            }
+            return node;
+        }
+
+        private Node parseAlternation() {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(parseSequence());
+            while (match('|')) {
+                nodes.add(parseSequence());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new Alternation(nodes);
+        }
+
+        private Node parseSequence() {
+            List<Node> nodes = new ArrayList<>();
+            while (index < pattern.length() && !peek('|') && !peek(')')) {
+                nodes.add(parseRepeat(parseAtom()));
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new Sequence(nodes);
+        }
+
+        private Node parseRepeat(Node node) {
+            while (index < pattern.length()) {
+                int min;
+                int max;
+                if (match('*')) {
+                    min = 0;
+                    max = -1;
+                } else if (match('+')) {
+                    min = 1;
+                    max = -1;
+                } else if (match('?')) {
+                    min = 0;
+                    max = 1;
+                } else if (peek('{') && index + 1 < pattern.length() && Character.isDigit(pattern.charAt(index + 1))) {
+                    index++;
+                    min = parseNumber();
+                    max = match(',') ? (peek('}') ? -1 : parseNumber()) : min;
+                    if (!match('}') || (max != -1 && max < min)) {
+                        throw error("Invalid repetition");
+                    }
+                } else {
+                    return node;
+                }
+                if (peek('+')) {
+                    throw error("Possessive quantifiers are not supported");
+                }
+                match('?');
+                node = new Repeat(node, min, max);
+            }
+            return node;
+        }
+
+        private int parseNumber() {
+            int start = index;
+            while (index < pattern.length() && Character.isDigit(pattern.charAt(index))) {
+                index++;
+            }
+            if (start == index) {
+                throw error("Expected a number");
+            }
+            return Integer.parseInt(pattern.substring(start, index));
+        }
+
+        private Node parseAtom() {
+            char c = pattern.charAt(index++);
+            switch (c) {
+                case '(':
+                    if (match('?')) {
+                        if (match('<') && !peek('=') && !peek('!')) {
+                            while (index < pattern.length() && pattern.charAt(index) != '>') {
+                                index++;
+                            }
+                            index++;
+                        } else if (!match(':')) {
+                            throw error("Unsupported group construct");
+                        }
+                    }
+                    Node node = parseAlternation();
+                    if (!match(')')) {
+                        throw error("Unclosed group");
+                    }
+                    return node;
+                case '[':
+                    return new Chars(parseClass());
+                case '.':
+                    return new Chars(DOT);
+                case '^':
+                    return new Anchor(LINE_START);
+                case '$':
+                    return new Anchor(LINE_END);
+                case '\\':
+                    return new Chars(parseEscape());
+                case '*':
+                case '+':
+                case '?':
+                    throw error("Dangling quantifier");
+                default:
+                    return new Chars(new int[] {c, c});
+            }
+        }
+
+        /**
+         * Parses a character class after the opening bracket.
+         */
+        private int[] parseClass() {
+            boolean negated = match('^');
+            int[] ranges = new int[0];
+            boolean first = true;
+            while (first || !peek(']')) {
+                if (index >= pattern.length()) {
+                    throw error("Unclosed character class");
+                }
+                first = false;
+                if (peek('[') || pattern.startsWith("&&", index)) {
+                    throw error("Nested character classes are not supported");
+                }
+                int[] atom;
+                if (match('\\')) {
+                    atom = parseEscape();
+                } else {
+                    char c = pattern.charAt(index++);
+                    atom = new int[] {c, c};
+                }
+                if (atom.length == 2 && atom[0] == atom[1] && peek('-')
+                        && index + 1 < pattern.length() && pattern.charAt(index + 1) != ']') {
+                    index++;
+                    int high;
+                    if (match('\\')) {
+                        int[] escape = parseEscape();
+                        if (escape.length != 2 || escape[0] != escape[1]) {
+                            throw error("Invalid character range");
+                        }
+                        high = escape[0];
+                    } else {
+                        high = pattern.charAt(index++);
+                    }
+                    if (high < atom[0]) {
+                        throw error("Invalid character range");
+                    }
+                    atom = new int[] {atom[0], high};
+                }
+                int[] merged = Arrays.copyOf(ranges, ranges.length + atom.length);
+                System.arraycopy(atom, 0, merged, ranges.length, atom.length);
+                ranges = merged;
+            }
+            index++;
+            ranges = normalize(ranges);
+            return negated ? negate(ranges) : ranges;
+        }
+
+        /**
+         * Parses an escape after the backslash, returning its ranges.
+         */
+        private int[] parseEscape() {
+            if (index >= pattern.length()) {
+                throw error("Trailing backslash");
+            }
+            char c = pattern.charAt(index++);
+            switch (c) {
+                case 'd': return DIGIT;
+                case 'D': return negate(DIGIT);
+                case 's': return SPACE;
+                case 'S': return negate(SPACE);
+                case 'w': return WORD;
+                case 'W': return negate(WORD);
+                case 't': return new int[] {'\t', '\t'};
+                case 'n': return new int[] {'\n', '\n'};
+                case 'r': return new int[] {'\r', '\r'};
+                case 'f': return new int[] {'\f', '\f'};
+                case 'e': return new int[] {'\u001B', '\u001B'};
+                case '0': return new int[] {'\0', '\0'};
+                case 'x':
+                    return single(Integer.parseInt(take(2), 16));
+                case 'u':
+                    return single(Integer.parseInt(take(4), 16));
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw error("Unsupported escape \\" + c);
+                    }
+                    return new int[] {c, c};
+            }
+        }
+
+        private String take(int count) {
+            if (index + count > pattern.length()) {
+                throw error("Truncated escape");
+            }
+            index += count;
+            return pattern.substring(index - count, index);
+        }
+
+        private static int[] single(int c) {
+            return new int[] {c, c};
+        }
+
+        private boolean peek(char c) {
+            return index < pattern.length() && pattern.charAt(index) == c;
+        }
+
+        private boolean match(char c) {
+            boolean peek = peek(c);
+            if (peek) {
+                index++;
+            }
+            return peek;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at index " + index + " of " + pattern + ".");
+        }
+
+    }
+
+}
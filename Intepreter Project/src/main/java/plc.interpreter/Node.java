@@ -0,0 +1,307 @@
+package plc.interpreter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An executable form of an {@link Ast}, created by {@link
+ * Interpreter#compile(Ast)}.
+ *
+ * The tree is compiled once and then executed any number of times. Each
+ * node knows what it is, so executing it is a single virtual call with no
+ * {@code instanceof} chain: literals are {@link Constant}s holding their
+ * value, identifiers are {@link Local}s or {@link Read}s and terms are {@link
+ * Call}s. Names of lexical variables (see {@link Body}) are resolved at
+ * compile time to a slot of the {@link Frame}. Any other name is a global,
+ * whose value is kept in an {@link InlineCache} at each site it is read, so
+ * later executions check the cache rather than look the name up through the
+ * scope chain.
+ *
+ * A call to a {@link Builtin} executes its compiled arguments in the same
+ * frame and passes the values to the matching entry point. A call to a
+ * special form passes the original, unevaluated ASTs of its arguments, just
+ * like {@link Interpreter#eval(Ast)}. Nodes cache values, so a tree should
+ * only be executed by one thread at a time.
+ */
+public abstract class Node {
+
+    private final Ast ast;
+
+    private Node(Ast ast) {
+        this.ast = ast;
+    }
+
+    public abstract Object execute(Frame frame);
+
+    /**
+     * Returns the AST the node was compiled from.
+     */
+    public final Ast getAst() {
+        return ast;
+    }
+
+    /**
+     * Returns the span of the AST the node was compiled from.
+     */
+    public final long getSpan() {
+        return ast.getSpan();
+    }
+
+    /**
+     * Compiles the AST, in which every name is a global.
+     */
+    static Node compile(Ast ast) {
+        return compile(ast, Collections.emptyMap());
+    }
+
+    /**
+     * Compiles the AST as the body of a frame with the given variables.
+     */
+    static Body compile(Ast ast, List<String> variables) throws EvalException {
+        Map<String, Integer> slots = new HashMap<>();
+        for (String variable : variables) {
+            if (slots.putIfAbsent(variable, slots.size()) != null) {
+                throw new EvalException("The identifier " + variable + " is defined more than once.");
+            }
+        }
+        return new Body(ast, variables.size(), compile(ast, slots));
+    }
+
+    /**
+     * Compiles the AST, resolving the names of variables to their slots and
+     * any other name as a global. Nested terms are compiled recursively, like
+     * {@link Interpreter#eval(Ast)} evaluates them.
+     */
+    private static Node compile(Ast ast, Map<String, Integer> slots) {
+        if (ast instanceof Ast.Term) {
+            Ast.Term term = (Ast.Term) ast;
+            Ast.Identifier name = new Ast.Identifier(term.getName());
+            name.setSpan(term.getSpan());
+            Node[] args = new Node[term.getArgs().size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = compile(term.getArgs().get(i), slots);
+            }
+            return new Call(term, resolve(name, slots), args);
+        } else if (ast instanceof Ast.Identifier) {
+            return resolve((Ast.Identifier) ast, slots);
+        } else if (ast instanceof Ast.NumberLiteral) {
+            return new Constant(ast, ((Ast.NumberLiteral) ast).getNumber());
+        } else if (ast instanceof Ast.StringLiteral) {
+            return new Constant(ast, ((Ast.StringLiteral) ast).getValue());
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private static Node resolve(Ast.Identifier ast, Map<String, Integer> slots) {
+        Integer index = slots.get(ast.getName());
+        return index != null ? new Local(ast, index) : new Read(ast);
+    }
+
+    @Override
+    public String toString() {
+        return ast.toString();
+    }
+
+    /**
+     * The root of a tree compiled with lexical variables, which runs in a new
+     * frame holding their values. Special forms receive unevaluated ASTs, so
+     * the variables are only visible to the compiled tree and the builtins it
+     * calls.
+     */
+    public static final class Body extends Node {
+
+        private final int size;
+        private final Node body;
+
+        private Body(Ast ast, int size, Node body) {
+            super(ast);
+            this.size = size;
+            this.body = body;
+        }
+
+        /**
+         * Returns the number of variables, which is the number of arguments
+         * {@link #enter(Frame, Object[])} expects.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public Node getBody() {
+            return body;
+        }
+
+        /**
+         * Creates the frame the body runs in, with the scope of the given one
+         * and the arguments as the values of the variables. The array becomes
+         * the new frame's slots.
+         */
+        public Frame enter(Frame frame, Object[] arguments) throws EvalException {
+            if (arguments.length != size) {
+                throw new EvalException("Expected " + size + " arguments, received " + arguments.length + ".");
+            }
+            return new Frame(frame.getScope(), arguments);
+        }
+
+        /**
+         * Runs the body without arguments, which is only valid if it has no
+         * variables (and so cannot depend on the frame it runs in).
+         */
+        @Override
+        public Object execute(Frame frame) {
+            return body.execute(enter(frame, new Object[0]));
+        }
+
+    }
+
+    /**
+     * A literal, whose value is returned as is.
+     */
+    public static final class Constant extends Node {
+
+        private final Object value;
+
+        private Constant(Ast ast, Object value) {
+            super(ast);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return value;
+        }
+
+    }
+
+    /**
+     * An identifier naming a lexical variable, whose value is read from its
+     * slot.
+     */
+    public static final class Local extends Node {
+
+        private final String name;
+        private final int index;
+
+        private Local(Ast.Identifier ast, int index) {
+            super(ast);
+            this.name = ast.getName();
+            this.index = index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return frame.get(index);
+        }
+
+    }
+
+    /**
+     * An identifier naming a global, whose value is read through an inline
+     * cache.
+     */
+    public static final class Read extends Node {
+
+        private final InlineCache cache;
+
+        private Read(Ast.Identifier ast) {
+            super(ast);
+            this.cache = new InlineCache(ast.getName());
+        }
+
+        public String getName() {
+            return cache.getName();
+        }
+
+        public InlineCache getCache() {
+            return cache;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return cache.get(frame.getScope());
+        }
+
+    }
+
+    /**
+     * A term, which calls the function its name refers to with its compiled
+     * arguments.
+     */
+    public static final class Call extends Node {
+
+        private final String name;
+        private final Node target;
+        private final Node[] args;
+        private final List<Node> list;
+
+        private Call(Ast.Term ast, Node target, Node[] args) {
+            super(ast);
+            this.name = ast.getName();
+            this.target = target;
+            this.args = args;
+            this.list = Collections.unmodifiableList(Arrays.asList(args));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the {@link Local} or {@link Read} of the function.
+         */
+        public Node getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the inline cache of the function, or null if it is a
+         * lexical variable.
+         */
+        public InlineCache getCache() {
+            return target instanceof Read ? ((Read) target).getCache() : null;
+        }
+
+        public List<Node> getArgs() {
+            return list;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object execute(Frame frame) {
+            Object function = target.execute(frame);
+            if (function instanceof Builtin) {
+                Builtin builtin = (Builtin) function;
+                switch (args.length) {
+                    case 0: return builtin.call0();
+                    case 1: return builtin.call1(args[0].execute(frame));
+                    case 2: return builtin.call2(args[0].execute(frame), args[1].execute(frame));
+                    case 3: return builtin.call3(args[0].execute(frame), args[1].execute(frame), args[2].execute(frame));
+                    default:
+                        Object[] values = new Object[args.length];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = args[i].execute(frame);
+                        }
+                        return builtin.callN(values);
+                }
+            } else if (!(function instanceof Function)) {
+                throw new EvalException("Expected " + function + " to have type Function.");
+            }
+            return ((Function<List<Ast>, Object>) function).apply(((Ast.Term) getAst()).getArgs());
+        }
+
+    }
+
+}
@@ -0,0 +1,188 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Whisp's numeric tower: integers are carried as {@link Long} and promoted to
+ * {@link BigInteger} only when a result overflows, and numbers with a
+ * fractional part are {@link BigDecimal}s.
+ *
+ * Arithmetic on two longs is overflow-checked machine arithmetic, so counters
+ * and other small integers never allocate a {@link BigDecimal}, and the
+ * result is boxed (which is free for small values, through the {@link
+ * Long#valueOf(long)} cache). If either operand is a decimal the operation is
+ * done in {@link BigDecimal}, and otherwise in {@link BigInteger} with the
+ * result narrowed back to a long if it fits. Every result except an inexact
+ * division is exact, and every result is in its narrowest representation,
+ * so an integer always has a single representation whichever operation
+ * produced it.
+ *
+ * Other {@link Number}s, such as an {@link Integer} defined in a scope by the
+ * host, are accepted as operands: integral types as longs and floating point
+ * ones as the decimal of their string representation.
+ */
+public final class Numbers {
+
+    /**
+     * The most digits a decimal integer literal can have and always fit in a
+     * long.
+     */
+    private static final int LONG_DIGITS = 18;
+
+    private Numbers() {}
+
+    /**
+     * Parses a number literal into its narrowest representation: a long if it
+     * is an integer which fits, a {@link BigInteger} if it is an integer
+     * which doesn't, and otherwise a {@link BigDecimal}. Integer literals of
+     * up to 18 digits are parsed directly as longs.
+     */
+    public static Number parse(String literal) throws NumberFormatException {
+        int digits = literal.length() - (literal.startsWith("-") || literal.startsWith("+") ? 1 : 0);
+        if (digits <= LONG_DIGITS && isInteger(literal)) {
+            return Long.parseLong(literal);
+        }
+        return narrow(new BigDecimal(literal));
+    }
+
+    private static boolean isInteger(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (!(c >= '0' && c <= '9' || i == 0 && (c == '-' || c == '+'))) {
+                return false;
+            }
+        }
+        return literal.length() > 1 || Character.isDigit(literal.charAt(0));
+    }
+
+    /**
+     * Returns the narrowest representation of the number. A decimal is only
+     * narrowed if it has a scale of zero, since {@code 1.0} and {@code 1} are
+     * written differently.
+     */
+    public static Number narrow(Number number) {
+        if (number instanceof Long) {
+            return number;
+        } else if (number instanceof BigInteger) {
+            return narrow((BigInteger) number);
+        } else if (number instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) number;
+            return decimal.scale() == 0 ? narrow(decimal.unscaledValue()) : decimal;
+        } else if (isIntegral(number)) {
+            return number.longValue();
+        } else {
+            return new BigDecimal(number.toString());
+        }
+    }
+
+    private static Number narrow(BigInteger integer) {
+        return integer.bitLength() < Long.SIZE ? (Number) integer.longValue() : integer;
+    }
+
+    public static Number add(Number left, Number right) {
+        if (isLong(left) && isLong(right)) {
+            long a = left.longValue();
+            long b = right.longValue();
+            long result = a + b;
+            if (((a ^ result) & (b ^ result)) >= 0) {
+                return result;
+            }
+        } else if (isDecimal(left) || isDecimal(right)) {
+            return toBigDecimal(left).add(toBigDecimal(right));
+        }
+        return narrow(toBigInteger(left).add(toBigInteger(right)));
+    }
+
+    public static Number subtract(Number left, Number right) {
+        if (isLong(left) && isLong(right)) {
+            long a = left.longValue();
+            long b = right.longValue();
+            long result = a - b;
+            if (((a ^ b) & (a ^ result)) >= 0) {
+                return result;
+            }
+        } else if (isDecimal(left) || isDecimal(right)) {
+            return toBigDecimal(left).subtract(toBigDecimal(right));
+        }
+        return narrow(toBigInteger(left).subtract(toBigInteger(right)));
+    }
+
+    public static Number multiply(Number left, Number right) {
+        if (isLong(left) && isLong(right)) {
+            long a = left.longValue();
+            long b = right.longValue();
+            long high = Math.multiplyHigh(a, b);
+            long result = a * b;
+            if (high == result >> 63) {
+                return result;
+            }
+        } else if (isDecimal(left) || isDecimal(right)) {
+            return toBigDecimal(left).multiply(toBigDecimal(right));
+        }
+        return narrow(toBigInteger(left).multiply(toBigInteger(right)));
+    }
+
+    public static Number negate(Number number) {
+        return subtract(0L, number);
+    }
+
+    /**
+     * Divides the numbers. An inexact quotient is rounded half-even to the
+     * scale of the dividend, so the quotient of two integers is always an
+     * integer ({@code 7 / 2} is {@code 4}, like {@code 8 / 2}) and the
+     * quotient of a decimal has as many digits after the point as the
+     * decimal.
+     */
+    public static Number divide(Number left, Number right) throws EvalException {
+        if (isZero(right)) {
+            throw new EvalException("Cannot divide " + left + " by zero.");
+        } else if (isLong(left) && isLong(right) && !(left.longValue() == Long.MIN_VALUE && right.longValue() == -1)) {
+            long a = left.longValue();
+            long b = right.longValue();
+            if (a % b == 0) {
+                return a / b;
+            }
+        } else if (!isDecimal(left) && !isDecimal(right)) {
+            BigInteger[] result = toBigInteger(left).divideAndRemainder(toBigInteger(right));
+            if (result[1].signum() == 0) {
+                return narrow(result[0]);
+            }
+        }
+        return narrow(toBigDecimal(left).divide(toBigDecimal(right), RoundingMode.HALF_EVEN));
+    }
+
+    public static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        } else if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        } else if (isLong(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        } else {
+            return new BigDecimal(number.toString());
+        }
+    }
+
+    private static BigInteger toBigInteger(Number number) {
+        return number instanceof BigInteger ? (BigInteger) number : BigInteger.valueOf(number.longValue());
+    }
+
+    private static boolean isZero(Number number) {
+        return isLong(number) ? number.longValue() == 0 : toBigDecimal(number).signum() == 0;
+    }
+
+    private static boolean isLong(Number number) {
+        return number instanceof Long || isIntegral(number);
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private static boolean isDecimal(Number number) {
+        return !(isLong(number) || number instanceof BigInteger);
+    }
+
+}
@@ -1,6 +1,5 @@
 package plc.interpreter;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -34,6 +33,39 @@ public final class Parser {
         return new Parser(input).parse();
     }
 
+    /**
+     * Parses the input like {@link #parse(String)}, but iteratively. See
+     * {@link #parseIterative(List)}.
+     */
+    public static Ast parseIterative(String input) {
+        return parseIterative(Lexer.lex(input));
+    }
+
+    /**
+     * Parses the tokens into a {@code "source"} term with an explicit stack of
+     * open terms instead of recursion, so the depth of nesting is only limited
+     * by the heap.
+     *
+     * This is a shift-reduce parser for the Whisp grammar: an opening bracket
+     * and the identifier after it shift a new term onto the stack, literals
+     * and identifiers are added to the arguments of the innermost open term,
+     * and a closing bracket reduces that term into the arguments of the term
+     * below it. Each token is looked at exactly once. The top-level forms are
+     * read by a {@link FormReader}, and the source term spans all of them.
+     */
+    public static Ast parseIterative(List<Token> tokens) {
+        List<Ast> source = new ArrayList<>();
+        FormReader reader = new FormReader(tokens.iterator());
+        while (reader.hasNext()) {
+            source.add(reader.next());
+        }
+        Ast ast = new Ast.Term("source", source);
+        if (!source.isEmpty()) {
+            ast.setSpan(Span.join(source.get(0).getSpan(), source.get(source.size() - 1).getSpan()));
+        }
+        return ast;
+    }
+
     /**
      * Repeatedly parses a list of ASTs, returning the list as arguments of an
      * {@link Ast.Term} with the identifier {@code "source"}.
@@ -177,16 +209,32 @@ public final class Parser {
             else throw new ParseException("Expected closing parenthesis or comma after argument.", tokens.get(0).getIndex());
     }
     private Ast identifier(){
-        return new Ast.Identifier(tokens.get(0).getLiteral());
+        return identifier(tokens.get(0));
     }
     private Ast number(){
-        BigDecimal num = new BigDecimal(tokens.get(0).getLiteral());
-            return new Ast.NumberLiteral(num);
+        return number(tokens.get(0));
     }
     private Ast string(){
-        String replaced = tokens.get(0).getLiteral().replace("\"","");
+        return string(tokens.get(0));
+    }
+    static Ast identifier(Token token){
+        return span(new Ast.Identifier(token.getLiteral()), token);
+    }
+    static Ast number(Token token){
+        return span(new Ast.NumberLiteral(Numbers.parse(token.getLiteral())), token);
+    }
+    static Ast string(Token token){
+        String replaced = token.getLiteral().replace("\"","");
         String replacedSecond = replaced.replace("\\n","\n");
-        return new Ast.StringLiteral(replacedSecond);
+        return span(new Ast.StringLiteral(replacedSecond), token);
+    }
+
+    /**
+     * Sets the span of a node created from a single token.
+     */
+    private static Ast span(Ast ast, Token token) {
+        ast.setSpan(Span.of(token.getIndex(), token.getIndex() + token.getLiteral().length()));
+        return ast;
     }
 
 
@@ -1,4 +1,6 @@
 package plc.interpreter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,4 +19,47 @@ public class Regex {
             NUMBER = Pattern.compile("^([0-9]+|[\\+\\-][0-9])(\\.[0-9])?[0-9]*$"),
             STRING = Pattern.compile("^\\\"([^\\\\]|(\\\\b)*|(\\\\n)*|(\\\\r)*|(\\\\t)*|(\\\\\\')*|(\\\\\\\")*|(\\\\\\\\)*)*\\\"$");
 
+    private static final Map<Pattern, LazyDfa> LINEAR = new ConcurrentHashMap<>();
+
+    /**
+     * The engines a pattern can be matched with.
+     *
+     *  - {@link #BACKTRACKING} is {@link Pattern#matcher}, which supports
+     *    capturing groups but can take exponential time on nested quantifiers
+     *    such as those in {@link #STRING}.
+     *  - {@link #LINEAR} matches with a {@link LazyDfa}, which takes time
+     *    linear in the input but only reports whether it matched.
+     */
+    public enum Engine {
+        BACKTRACKING,
+        LINEAR
+    }
+
+    /**
+     * Returns true if the entire input matches the pattern, using the given
+     * engine. Both engines accept exactly the same inputs.
+     */
+    public static boolean matches(Pattern pattern, CharSequence input, Engine engine) {
+        switch (engine) {
+            case LINEAR:
+                return linear(pattern).matches(input);
+            default:
+                return pattern.matcher(input).matches();
+        }
+    }
+
+    /**
+     * Returns the linear-time matcher for the pattern, which is compiled the
+     * first time it is requested. Throws {@link IllegalArgumentException} if
+     * the pattern uses flags or syntax the {@link Nfa} does not support.
+     */
+    public static LazyDfa linear(Pattern pattern) {
+        return LINEAR.computeIfAbsent(pattern, p -> {
+            if (p.flags() != 0) {
+                throw new IllegalArgumentException("Flags are not supported by the linear engine: " + p.pattern() + ".");
+            }
+            return LazyDfa.compile(p.pattern());
+        });
+    }
+
 }
@@ -4,37 +4,98 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Maps names to values, falling back to the parent scope for names which
+ * are not defined here.
+ *
+ * Each value is held in a mutable {@link Binding}, so a lookup is a single
+ * probe of the map at each level, and redefining or setting a name updates
+ * its binding in place. Compiled code (see {@link InlineCache}) therefore
+ * caches the binding a name resolves to rather than its value. The binding
+ * only becomes stale if a scope between the one executing and the one the
+ * binding is in later defines the same name, so the root of each tree of
+ * scopes keeps a {@link #getVersion() version} which only such a shadowing
+ * definition changes.
+ */
 public final class Scope {
 
     private final Scope parent;
-    private final Map<String, Object> map = new HashMap<>();
+    private final Scope root;
+    private final Map<String, Binding> map = new HashMap<>();
+    private long version = 0; //root only
 
     public Scope(Scope parent) {
         this.parent = parent;
+        this.root = parent != null ? parent.root : this;
     }
 
     public void define(String name, Object value) {
-        map.put(name, value);
+        Binding binding = map.get(name);
+        if (binding != null) {
+            binding.value = value;
+        } else {
+            if (parent != null && parent.find(name) != null) {
+                root.version++;
+            }
+            map.put(name, new Binding(value));
+        }
     }
 
     public void set(String name, Object value) throws EvalException {
-        if (map.containsKey(name)) {
-            map.put(name, value);
-        } else if (parent != null) {
-            parent.set(name, value);
-        } else {
+        Binding binding = find(name);
+        if (binding == null) {
             throw new EvalException("The identifier " + name + " is not defined.");
         }
+        binding.value = value;
     }
 
     public Object lookup(String name) throws EvalException {
-        if (map.containsKey(name)) {
-            return map.get(name);
-        } else if (parent != null) {
-            return parent.lookup(name);
-        } else {
+        Binding binding = find(name);
+        if (binding == null) {
             throw new EvalException("The identifier " + name + " is not defined.");
         }
+        return binding.value;
+    }
+
+    /**
+     * Returns the binding the name resolves to in this scope, or null if it
+     * is not defined.
+     */
+    Binding find(String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Binding binding = scope.map.get(name);
+            if (binding != null) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the version of the tree of scopes this scope belongs to, which
+     * changes whenever a name defined in a scope is shadowed by a definition
+     * in one of its descendants. While the version is the same, a name keeps
+     * resolving to the same binding.
+     */
+    long getVersion() {
+        return root.version;
+    }
+
+    /**
+     * The mutable cell holding the value of a defined name.
+     */
+    static final class Binding {
+
+        private Object value;
+
+        private Binding(Object value) {
+            this.value = value;
+        }
+
+        Object get() {
+            return value;
+        }
+
     }
 
 }
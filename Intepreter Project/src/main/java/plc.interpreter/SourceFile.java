@@ -0,0 +1,104 @@
+package plc.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * The text of a source file, with a line index for mapping offsets (such as
+ * those in a {@link Span}) to lines and columns.
+ *
+ * The index is an array of the offsets at which each line starts, built the
+ * first time it is needed, so a lookup is a binary search. Lines end at
+ * {@code \n}, {@code \r\n} or {@code \r}. Lines and columns are numbered from
+ * one, and columns count {@code char}s.
+ */
+public final class SourceFile {
+
+    private final String name;
+    private final CharSequence text;
+    private volatile int[] lines;
+
+    public SourceFile(String name, CharSequence text) {
+        this.name = name;
+        this.text = text;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CharSequence getText() {
+        return text;
+    }
+
+    public int getLineCount() {
+        return lines().length;
+    }
+
+    /**
+     * Returns the line containing the offset. The offset may be the length
+     * of the text, which is on the last line.
+     */
+    public int getLine(int offset) {
+        if (offset < 0 || offset > text.length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is out of bounds for length " + text.length() + ".");
+        }
+        int index = Arrays.binarySearch(lines(), offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int getColumn(int offset) {
+        return offset - getLineStart(getLine(offset)) + 1;
+    }
+
+    /**
+     * Returns the offset of the first character of the line.
+     */
+    public int getLineStart(int line) {
+        int[] lines = lines();
+        if (line < 1 || line > lines.length) {
+            throw new IndexOutOfBoundsException("Line " + line + " is out of bounds for " + lines.length + " lines.");
+        }
+        return lines[line - 1];
+    }
+
+    /**
+     * Formats the start of the span as {@code name:line:column}, or just the
+     * name if the span is {@link Span#NONE}.
+     */
+    public String format(long span) {
+        if (span == Span.NONE) {
+            return name;
+        }
+        int start = Span.getStart(span);
+        return name + ":" + getLine(start) + ":" + getColumn(start);
+    }
+
+    private int[] lines() {
+        int[] lines = this.lines;
+        if (lines == null) {
+            lines = new int[16];
+            int count = 1;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+                    if (count == lines.length) {
+                        lines = Arrays.copyOf(lines, count * 2);
+                    }
+                    lines[count++] = i + 1;
+                }
+            }
+            lines = Arrays.copyOf(lines, count);
+            this.lines = lines;
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return "SourceFile{" +
+                "name='" + name + '\'' +
+                ", length=" + text.length() +
+                '}';
+    }
+
+}
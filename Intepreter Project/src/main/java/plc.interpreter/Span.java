@@ -0,0 +1,60 @@
+package plc.interpreter;
+
+/**
+ * Packs the source span of an AST node, the offsets of its first character
+ * and one past its last, into a single {@code long}, so spans cost one field
+ * per node and no allocation. The start is stored in the high 32 bits and the
+ * end in the low 32 bits. Nodes which were not parsed from source have the
+ * span {@link #NONE}. Use a {@link SourceFile} to map offsets to lines and
+ * columns.
+ */
+public final class Span {
+
+    public static final long NONE = -1;
+
+    private Span() {}
+
+    /**
+     * Returns the span from {@code start} (inclusive) to {@code end}
+     * (exclusive), or {@link #NONE} if either offset is negative (such as for
+     * tokens without a position).
+     */
+    public static long of(int start, int end) {
+        if (start < 0 || end < start) {
+            return NONE;
+        }
+        return (long) start << 32 | end;
+    }
+
+    public static int getStart(long span) {
+        return (int) (span >>> 32);
+    }
+
+    public static int getEnd(long span) {
+        return (int) span;
+    }
+
+    public static int getLength(long span) {
+        return getEnd(span) - getStart(span);
+    }
+
+    /**
+     * Returns the span from the start of {@code first} to the end of {@code
+     * last}, or {@link #NONE} if either is {@link #NONE}.
+     */
+    public static long join(long first, long last) {
+        return first == NONE || last == NONE ? NONE : of(getStart(first), getEnd(last));
+    }
+
+    /**
+     * Returns the span moved by {@code delta} characters.
+     */
+    public static long shift(long span, int delta) {
+        return span == NONE ? NONE : of(getStart(span) + delta, getEnd(span) + delta);
+    }
+
+    public static String toString(long span) {
+        return span == NONE ? "[]" : "[" + getStart(span) + ", " + getEnd(span) + ")";
+    }
+
+}
@@ -7,10 +7,15 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 final class InterpreterTests {
@@ -27,7 +32,7 @@ final class InterpreterTests {
 
     @Test
     void testNumber() {
-        test(new Ast.NumberLiteral(BigDecimal.ONE), BigDecimal.ONE, Collections.emptyMap());
+        test(new Ast.NumberLiteral(BigDecimal.ONE), 1L, Collections.emptyMap());
     }
 
     @Test
@@ -37,24 +42,24 @@ final class InterpreterTests {
 
     @ParameterizedTest
     @MethodSource
-    void testAddition(String test, Ast ast, BigDecimal expected) {
+    void testAddition(String test, Ast ast, Number expected) {
         test(ast, expected, Collections.emptyMap());
     }
 
     private static Stream<Arguments> testAddition() {
         return Stream.of(
-                Arguments.of("Zero Arguments", new Ast.Term("+", Arrays.asList()), BigDecimal.valueOf(0)),
+                Arguments.of("Zero Arguments", new Ast.Term("+", Arrays.asList()), 0L),
                 Arguments.of("Multiple Arguments", new Ast.Term("+", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.ONE),
                         new Ast.NumberLiteral(BigDecimal.valueOf(2)),
                         new Ast.NumberLiteral(BigDecimal.valueOf(3))
-                )), BigDecimal.valueOf(6))
+                )), 6L)
         );
     }
 
     @ParameterizedTest
     @MethodSource
-    void testSubtraction(String test, Ast ast, BigDecimal expected) {
+    void testSubtraction(String test, Ast ast, Number expected) {
         test(ast, expected, Collections.emptyMap());
     }
 
@@ -63,38 +68,38 @@ final class InterpreterTests {
                 Arguments.of("Zero Arguments", new Ast.Term("-", Arrays.asList()), null),
                 Arguments.of("Single Argument", new Ast.Term("-", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.ONE)
-                )), BigDecimal.valueOf(-1)),
+                )), -1L),
                 Arguments.of("Multiple Arguments", new Ast.Term("-", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.ONE),
                         new Ast.NumberLiteral(BigDecimal.valueOf(2)),
                         new Ast.NumberLiteral(BigDecimal.valueOf(3))
-                )), BigDecimal.valueOf(-4))
+                )), -4L)
         );
     }
 
     @ParameterizedTest
     @MethodSource
-    void testMultiply(String test, Ast ast, BigDecimal expected) {
+    void testMultiply(String test, Ast ast, Number expected) {
         test(ast, expected, Collections.emptyMap());
     }
 
     private static Stream<Arguments> testMultiply() {
         return Stream.of(
-                Arguments.of("Zero Arguments", new Ast.Term("*", Arrays.asList()), BigDecimal.valueOf(1)),
+                Arguments.of("Zero Arguments", new Ast.Term("*", Arrays.asList()), 1L),
                 Arguments.of("Single Argument", new Ast.Term("*", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.valueOf(2))
-                )), BigDecimal.valueOf(2)),
+                )), 2L),
                 Arguments.of("Multiple Arguments", new Ast.Term("*", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.ONE),
                         new Ast.NumberLiteral(BigDecimal.valueOf(2)),
                         new Ast.NumberLiteral(BigDecimal.valueOf(3))
-                )), BigDecimal.valueOf(6))
+                )), 6L)
         );
     }
 
     @ParameterizedTest
     @MethodSource
-    void testDivide(String test, Ast ast, BigDecimal expected) {
+    void testDivide(String test, Ast ast, Number expected) {
         test(ast, expected, Collections.emptyMap());
     }
 
@@ -103,15 +108,67 @@ final class InterpreterTests {
                 Arguments.of("Zero Arguments", new Ast.Term("/", Arrays.asList()), null),
                 Arguments.of("Single Argument", new Ast.Term("/", Arrays.asList(
                         new Ast.NumberLiteral(BigDecimal.valueOf(2))
-                )), BigDecimal.valueOf(0)),
+                )), 0L),
                 Arguments.of("Multiple Arguments", new Ast.Term("/", Arrays.asList(
-                        new Ast.NumberLiteral(BigDecimal.valueOf(1.000)),
+                        new Ast.NumberLiteral(new BigDecimal("1.000")),
                         new Ast.NumberLiteral(BigDecimal.valueOf(2)),
                         new Ast.NumberLiteral(BigDecimal.valueOf(3))
                 )), BigDecimal.valueOf(.167))
         );
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testNumericTower(String test, Ast ast, Number expected) {
+        test(ast, expected, Collections.emptyMap());
+    }
+
+    private static Stream<Arguments> testNumericTower() {
+        return Stream.of(
+                Arguments.of("Overflow", new Ast.Term("+", Arrays.asList(
+                        new Ast.NumberLiteral(Long.MAX_VALUE),
+                        new Ast.NumberLiteral(1L)
+                )), BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)),
+                Arguments.of("Narrowed", new Ast.Term("-", Arrays.asList(
+                        new Ast.Term("*", Arrays.asList(
+                                new Ast.NumberLiteral(Long.MAX_VALUE),
+                                new Ast.NumberLiteral(2L)
+                        )),
+                        new Ast.NumberLiteral(Long.MAX_VALUE)
+                )), Long.MAX_VALUE),
+                Arguments.of("Decimal", new Ast.Term("+", Arrays.asList(
+                        new Ast.NumberLiteral(1L),
+                        new Ast.NumberLiteral(new BigDecimal("0.50"))
+                )), new BigDecimal("1.50")),
+                Arguments.of("Exact Division", new Ast.Term("/", Arrays.asList(
+                        new Ast.NumberLiteral(8L),
+                        new Ast.NumberLiteral(2L)
+                )), 4L),
+                Arguments.of("Rounded Division", new Ast.Term("/", Arrays.asList(
+                        new Ast.NumberLiteral(7L),
+                        new Ast.NumberLiteral(2L)
+                )), 4L),
+                Arguments.of("Rounded Large Division", new Ast.Term("/", Arrays.asList(
+                        new Ast.NumberLiteral(new BigInteger("100000000000000000001")),
+                        new Ast.NumberLiteral(2L)
+                )), new BigInteger("50000000000000000000")),
+                Arguments.of("Rounded Decimal Division", new Ast.Term("/", Arrays.asList(
+                        new Ast.NumberLiteral(new BigDecimal("1.0")),
+                        new Ast.NumberLiteral(3L)
+                )), new BigDecimal("0.3")),
+                Arguments.of("Negate Minimum", new Ast.Term("-", Arrays.asList(
+                        new Ast.NumberLiteral(Long.MIN_VALUE)
+                )), BigInteger.valueOf(Long.MIN_VALUE).negate()),
+                Arguments.of("Divide By Zero", new Ast.Term("/", Arrays.asList(
+                        new Ast.NumberLiteral(1L),
+                        new Ast.NumberLiteral(0L)
+                )), null),
+                Arguments.of("Not Number", new Ast.Term("+", Arrays.asList(
+                        new Ast.StringLiteral("1")
+                )), null)
+        );
+    }
+
     @ParameterizedTest
     @MethodSource
     void testTrue(String test, Ast ast, boolean expected) {
@@ -145,6 +202,209 @@ final class InterpreterTests {
         }
 
 
+    @Test
+    void testEvalAll() {
+        StringWriter writer = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(writer, true), new Scope(null));
+        Iterator<Ast> forms = Arrays.<Ast>asList(
+                new Ast.Term("print", Arrays.asList(new Ast.StringLiteral("first"))),
+                new Ast.Term("print", Arrays.asList(new Ast.StringLiteral("second")))
+        ).iterator();
+        Object result = interpreter.evalAll(new Iterator<Ast>() {
+
+            @Override
+            public boolean hasNext() {
+                return forms.hasNext();
+            }
+
+            @Override
+            public Ast next() {
+                Ast next = forms.next();
+                if (!forms.hasNext()) {
+                    Assertions.assertEquals("first" + System.lineSeparator(), writer.toString());
+                }
+                return next;
+            }
+
+        });
+        Assertions.assertEquals(Interpreter.VOID, result);
+        Assertions.assertEquals("first" + System.lineSeparator() + "second" + System.lineSeparator(), writer.toString());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testCompile(String test, Ast ast, Object expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out), new Scope(null));
+        Node node = interpreter.compile(ast);
+        Assertions.assertEquals(ast.getSpan(), node.getSpan());
+        for (int i = 0; i < 3; i++) {
+            if (expected != null) {
+                Assertions.assertEquals(expected, interpreter.execute(node));
+            } else {
+                Assertions.assertThrows(EvalException.class, () -> interpreter.execute(node));
+            }
+        }
+    }
+
+    private static Stream<Arguments> testCompile() {
+        return Stream.of(
+                Arguments.of("Number", new Ast.NumberLiteral(BigDecimal.ONE), 1L),
+                Arguments.of("Addition", new Ast.Term("+", Arrays.asList(
+                        new Ast.NumberLiteral(BigDecimal.ONE),
+                        new Ast.NumberLiteral(BigDecimal.TEN)
+                )), 11L),
+                Arguments.of("Nested", new Ast.Term("*", Arrays.asList(
+                        new Ast.Term("+", Arrays.asList(
+                                new Ast.NumberLiteral(BigDecimal.ONE),
+                                new Ast.NumberLiteral(BigDecimal.ONE)
+                        )),
+                        new Ast.NumberLiteral(BigDecimal.TEN)
+                )), 20L),
+                Arguments.of("Undefined", new Ast.Identifier("undefined"), null),
+                Arguments.of("Undefined Function", new Ast.Term("undefined", Arrays.asList()), null)
+        );
+    }
+
+    @Test
+    void testCompileRedefine() {
+        StringWriter writer = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(writer, true), new Scope(null));
+        Node node = interpreter.compile(new Ast.Term("print", Arrays.asList(new Ast.Identifier("x"))));
+        interpreter.scope.define("x", "first");
+        interpreter.execute(node);
+        interpreter.scope.set("x", "second");
+        interpreter.execute(node);
+        interpreter.scope = new Scope(interpreter.scope);
+        interpreter.scope.define("x", "third");
+        Assertions.assertEquals(Interpreter.VOID, interpreter.execute(node));
+        Assertions.assertEquals(String.join(System.lineSeparator(), "first", "second", "third", ""), writer.toString());
+    }
+
+    @Test
+    void testCompileVariables() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out), new Scope(null));
+        interpreter.scope.define("x", BigDecimal.TEN);
+        interpreter.scope.define("y", BigDecimal.TEN);
+        Node.Body body = interpreter.compile(new Ast.Term("+", Arrays.asList(
+                new Ast.Identifier("x"),
+                new Ast.Identifier("y"),
+                new Ast.Identifier("x")
+        )), Arrays.asList("x", "+"));
+        Assertions.assertEquals(2, body.getSize());
+        Assertions.assertEquals(BigDecimal.valueOf(12), interpreter.execute(body, BigDecimal.ONE, interpreter.scope.lookup("+")));
+        Assertions.assertEquals(BigDecimal.valueOf(40), interpreter.execute(body, BigDecimal.valueOf(2), interpreter.scope.lookup("*")));
+        Assertions.assertThrows(EvalException.class, () -> interpreter.execute(body, BigDecimal.ONE));
+        Assertions.assertThrows(EvalException.class, () -> interpreter.execute(body, BigDecimal.ONE, BigDecimal.ONE));
+        Assertions.assertThrows(EvalException.class, () -> interpreter.compile(new Ast.Identifier("x"), Arrays.asList("x", "x")));
+    }
+
+    @Test
+    void testInlineCache() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out), new Scope(null));
+        Node.Call call = (Node.Call) interpreter.compile(new Ast.Term("+", Arrays.asList(
+                new Ast.NumberLiteral(BigDecimal.ONE)
+        )));
+        InlineCache cache = call.getCache();
+        Assertions.assertEquals(InlineCache.State.UNINITIALIZED, cache.getState());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(1L, interpreter.execute(call));
+        }
+        Assertions.assertEquals(InlineCache.State.MONOMORPHIC, cache.getState());
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        interpreter.scope.define("+", interpreter.scope.lookup("-"));
+        Assertions.assertEquals(-1L, interpreter.execute(call));
+        Assertions.assertEquals(1, cache.getMisses());
+        Interpreter other = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        new Scope(other.scope).define("+", other.scope.lookup("*"));
+        long hits = cache.getHits();
+        Assertions.assertEquals(-1L, interpreter.execute(call));
+        Assertions.assertEquals(hits + 1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        Scope global = interpreter.scope;
+        interpreter.scope = new Scope(global);
+        interpreter.execute(call);
+        Assertions.assertEquals(InlineCache.State.POLYMORPHIC, cache.getState());
+        interpreter.scope.set("+", global.lookup("*"));
+        Assertions.assertEquals(1L, interpreter.execute(call));
+        Assertions.assertEquals(2, cache.getMisses());
+        interpreter.scope.define("+", global.lookup("-"));
+        Assertions.assertEquals(-1L, interpreter.execute(call));
+        Assertions.assertEquals(3, cache.getMisses());
+        for (int i = 0; i < InlineCache.LIMIT; i++) {
+            interpreter.scope = new Scope(global);
+            interpreter.execute(call);
+        }
+        Assertions.assertEquals(InlineCache.State.MEGAMORPHIC, cache.getState());
+        long misses = cache.getMisses();
+        interpreter.execute(call);
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    void testBuiltinArity() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out), new Scope(null));
+        StringBuilder calls = new StringBuilder();
+        interpreter.scope.define("f", new Builtin() {
+
+            @Override
+            public Object call0() {
+                calls.append(0);
+                return Interpreter.VOID;
+            }
+
+            @Override
+            public Object call2(Object arg1, Object arg2) {
+                calls.append(2);
+                return Arrays.asList(arg1, arg2);
+            }
+
+            @Override
+            public Object callN(Object[] args) {
+                calls.append('N');
+                return Arrays.asList(args);
+            }
+
+        });
+        Assertions.assertEquals(Interpreter.VOID, interpreter.eval(new Ast.Term("f", Arrays.asList())));
+        Assertions.assertEquals(Arrays.asList(1L, "a"), interpreter.eval(new Ast.Term("f", Arrays.asList(
+                new Ast.NumberLiteral(BigDecimal.ONE),
+                new Ast.StringLiteral("a")
+        ))));
+        Assertions.assertEquals(Arrays.asList(1L), interpreter.eval(new Ast.Term("f", Arrays.asList(
+                new Ast.NumberLiteral(BigDecimal.ONE)
+        ))));
+        Node node = interpreter.compile(new Ast.Term("f", Arrays.asList(
+                new Ast.Term("+", Arrays.asList()),
+                new Ast.NumberLiteral(BigDecimal.ONE)
+        )));
+        Assertions.assertEquals(Arrays.asList(0L, 1L), interpreter.execute(node));
+        Assertions.assertEquals("02N2", calls.toString());
+    }
+
+    @Test
+    void testPrintArities() {
+        StringWriter writer = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(writer, true), new Scope(null));
+        for (int count = 0; count <= 4; count++) {
+            Ast[] args = new Ast[count];
+            for (int i = 0; i < count; i++) {
+                args[i] = new Ast.NumberLiteral(BigDecimal.valueOf(i));
+            }
+            Assertions.assertEquals(Interpreter.VOID, interpreter.eval(new Ast.Term("print", Arrays.asList(args))));
+        }
+        Assertions.assertEquals(String.join(System.lineSeparator(), "", "0", "01", "012", "0123", ""), writer.toString());
+    }
+
+    @Test
+    void testSpecialForm() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out), new Scope(null));
+        interpreter.scope.define("quote", (Function<List<Ast>, Object>) args -> args.get(0));
+        Ast ast = new Ast.Term("quote", Arrays.asList(new Ast.Identifier("undefined")));
+        Assertions.assertEquals(new Ast.Identifier("undefined"), interpreter.eval(ast));
+        Assertions.assertEquals(new Ast.Identifier("undefined"), interpreter.execute(interpreter.compile(ast)));
+    }
+
     private static void test(Ast ast, Object expected, Map<String, Object> map) {
         Scope scope = new Scope(null);
         map.forEach(scope::define);
@@ -8,6 +8,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 /**
@@ -172,6 +174,54 @@ final class LexerTests {
 //        Assertions.assertFalse(lexer.chars.has(0));
 //    }
 
+    @ParameterizedTest
+    @MethodSource
+    void testGeneratedRegex(String test, Pattern pattern, Token.Type type, String input) {
+        boolean token;
+        try {
+            token = Lexer.lexGenerated(input).equals(Arrays.asList(new Token(type, input, 0)));
+        } catch (ParseException e) {
+            token = false;
+        }
+        Assertions.assertEquals(pattern.matcher(input).matches(), token);
+    }
+
+    /**
+     * The cases of {@link RegexTests} for the token regexes, which the rules
+     * of the generated lexer must agree with.
+     */
+    private static Stream<Arguments> testGeneratedRegex() {
+        return Stream.of(
+                cases(Regex.IDENTIFIER, Token.Type.IDENTIFIER, RegexTests.testIdentifierRegex()),
+                cases(Regex.NUMBER, Token.Type.NUMBER, RegexTests.testNumberRegex()),
+                cases(Regex.STRING, Token.Type.STRING, RegexTests.testStringRegex())
+        ).flatMap(Function.identity());
+    }
+
+    private static Stream<Arguments> cases(Pattern pattern, Token.Type type, Stream<Arguments> cases) {
+        return cases.map(arguments -> Arguments.of(arguments.get()[0], pattern, type, arguments.get()[1]));
+    }
+
+    @Test
+    void testGenerated() {
+        String input = "(print \"Hello,\\n World!\" [+ 1 -2.0] x-y?)";
+        List<Token> expected = Arrays.asList(
+                new Token(Token.Type.OPERATOR, "(", 0),
+                new Token(Token.Type.IDENTIFIER, "print", 1),
+                new Token(Token.Type.STRING, "\"Hello,\\n World!\"", 7),
+                new Token(Token.Type.OPERATOR, "[", 25),
+                new Token(Token.Type.IDENTIFIER, "+", 26),
+                new Token(Token.Type.NUMBER, "1", 28),
+                new Token(Token.Type.NUMBER, "-2.0", 30),
+                new Token(Token.Type.OPERATOR, "]", 34),
+                new Token(Token.Type.IDENTIFIER, "x-y?", 36),
+                new Token(Token.Type.OPERATOR, ")", 40)
+        );
+        Assertions.assertEquals(expected, Lexer.lexGenerated(input));
+        Assertions.assertEquals(4, Assertions.assertThrows(ParseException.class, () -> Lexer.lexGenerated("(\"a\\q\")")).getIndex());
+        Assertions.assertEquals(4, Assertions.assertThrows(ParseException.class, () -> Lexer.lexGenerated("(\"ab")).getIndex());
+    }
+
     /**
      * Tests that the input lexes to the (single) expected token if successful,
      * else throws a {@link ParseException} otherwise.
@@ -0,0 +1,317 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class ParserTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testParseIterative(String test, List<Token> tokens, Ast expected) {
+        if (expected != null) {
+            Assertions.assertEquals(expected, Parser.parseIterative(tokens));
+        } else {
+            Assertions.assertThrows(ParseException.class, () -> Parser.parseIterative(tokens));
+        }
+    }
+
+    private static Stream<Arguments> testParseIterative() {
+        return Stream.of(
+                Arguments.of("Empty", Arrays.asList(), source()),
+                Arguments.of("Term",
+                        Arrays.asList(
+                                new Token(Token.Type.OPERATOR, "(", 0),
+                                new Token(Token.Type.IDENTIFIER, "print", 1),
+                                new Token(Token.Type.STRING, "\"Hello,\\nWorld!\"", 7),
+                                new Token(Token.Type.NUMBER, "10", 24),
+                                new Token(Token.Type.IDENTIFIER, "x", 27),
+                                new Token(Token.Type.OPERATOR, ")", 28)
+                        ),
+                        source(new Ast.Term("print", Arrays.asList(
+                                new Ast.StringLiteral("Hello,\nWorld!"),
+                                new Ast.NumberLiteral(BigDecimal.TEN),
+                                new Ast.Identifier("x")
+                        )))
+                ),
+                Arguments.of("Nested Terms",
+                        Arrays.asList(
+                                new Token(Token.Type.OPERATOR, "(", 0),
+                                new Token(Token.Type.IDENTIFIER, "+", 1),
+                                new Token(Token.Type.OPERATOR, "[", 3),
+                                new Token(Token.Type.IDENTIFIER, "f", 4),
+                                new Token(Token.Type.OPERATOR, "]", 5),
+                                new Token(Token.Type.NUMBER, "1", 7),
+                                new Token(Token.Type.OPERATOR, ")", 8),
+                                new Token(Token.Type.OPERATOR, "(", 10),
+                                new Token(Token.Type.IDENTIFIER, "g", 11),
+                                new Token(Token.Type.OPERATOR, ")", 12)
+                        ),
+                        source(
+                                new Ast.Term("+", Arrays.asList(
+                                        new Ast.Term("f", Arrays.asList()),
+                                        new Ast.NumberLiteral(BigDecimal.ONE)
+                                )),
+                                new Ast.Term("g", Arrays.asList())
+                        )
+                ),
+                Arguments.of("Missing Name",
+                        Arrays.asList(
+                                new Token(Token.Type.OPERATOR, "(", 0),
+                                new Token(Token.Type.NUMBER, "1", 1),
+                                new Token(Token.Type.OPERATOR, ")", 2)
+                        ),
+                        null
+                ),
+                Arguments.of("Mismatched Brackets",
+                        Arrays.asList(
+                                new Token(Token.Type.OPERATOR, "(", 0),
+                                new Token(Token.Type.IDENTIFIER, "f", 1),
+                                new Token(Token.Type.OPERATOR, "]", 2)
+                        ),
+                        null
+                ),
+                Arguments.of("Unclosed Term",
+                        Arrays.asList(
+                                new Token(Token.Type.OPERATOR, "(", 0),
+                                new Token(Token.Type.IDENTIFIER, "f", 1)
+                        ),
+                        null
+                ),
+                Arguments.of("Top Level Literal",
+                        Arrays.asList(
+                                new Token(Token.Type.NUMBER, "1", 0)
+                        ),
+                        null
+                )
+        );
+    }
+
+    @Test
+    void testDeepNesting() {
+        int depth = 100000;
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            tokens.add(new Token(Token.Type.OPERATOR, "(", 2 * i));
+            tokens.add(new Token(Token.Type.IDENTIFIER, "f", 2 * i + 1));
+        }
+        for (int i = 0; i < depth; i++) {
+            tokens.add(new Token(Token.Type.OPERATOR, ")", 2 * depth + i));
+        }
+        Ast ast = Parser.parseIterative(tokens);
+        for (int i = 0; i < depth; i++) {
+            List<Ast> args = ((Ast.Term) ast).getArgs();
+            Assertions.assertEquals(1, args.size());
+            ast = args.get(0);
+        }
+        Assertions.assertEquals("f", ((Ast.Term) ast).getName());
+        Assertions.assertTrue(((Ast.Term) ast).getArgs().isEmpty());
+    }
+
+    @Test
+    void testFormReader() {
+        List<Token> tokens = Arrays.asList(
+                new Token(Token.Type.OPERATOR, "(", 0),
+                new Token(Token.Type.IDENTIFIER, "f", 1),
+                new Token(Token.Type.NUMBER, "1", 3),
+                new Token(Token.Type.OPERATOR, ")", 4),
+                new Token(Token.Type.OPERATOR, "[", 6),
+                new Token(Token.Type.IDENTIFIER, "g", 7),
+                new Token(Token.Type.OPERATOR, "]", 8)
+        );
+        int[] consumed = {0};
+        Iterator<Token> iterator = tokens.iterator();
+        FormReader reader = new FormReader(new Iterator<Token>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                consumed[0]++;
+                return iterator.next();
+            }
+
+        });
+        Assertions.assertEquals(new Ast.Term("f", Arrays.asList(new Ast.NumberLiteral(BigDecimal.ONE))), reader.next());
+        Assertions.assertEquals(4, consumed[0]);
+        Assertions.assertEquals(new Ast.Term("g", Arrays.asList()), reader.next());
+        Assertions.assertFalse(reader.hasNext());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testNumber(String literal, Number expected) {
+        Ast.NumberLiteral ast = (Ast.NumberLiteral) Parser.number(new Token(Token.Type.NUMBER, literal, 0));
+        Assertions.assertEquals(expected, ast.getNumber());
+    }
+
+    private static Stream<Arguments> testNumber() {
+        return Stream.of(
+                Arguments.of("1", 1L),
+                Arguments.of("-42", -42L),
+                Arguments.of("9223372036854775807", Long.MAX_VALUE),
+                Arguments.of("9223372036854775808", new BigInteger("9223372036854775808")),
+                Arguments.of("1.0", new BigDecimal("1.0")),
+                Arguments.of("-1.50", new BigDecimal("-1.50"))
+        );
+    }
+
+    @Test
+    void testBinaryAst() throws IOException {
+        Ast ast = source(
+                new Ast.Term("define", Arrays.asList(
+                        new Ast.Identifier("x"),
+                        new Ast.NumberLiteral(new BigDecimal("-1.50"))
+                )),
+                new Ast.Term("print", Arrays.asList(
+                        new Ast.StringLiteral("caf\u00e9"),
+                        new Ast.Identifier("x"),
+                        new Ast.Term("list", Arrays.asList())
+                ))
+        );
+        Assertions.assertEquals(ast, BinaryAst.decode(ByteBuffer.wrap(BinaryAst.encode(ast))));
+        Path path = Files.createTempFile("ast", ".bin");
+        try {
+            BinaryAst.write(ast, path);
+            Assertions.assertEquals(ast, BinaryAst.read(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testBinaryAstDeepNesting() {
+        Ast ast = new Ast.Term("f", Arrays.asList());
+        for (int i = 0; i < 100000; i++) {
+            ast = new Ast.Term("f", Arrays.asList(ast, new Ast.NumberLiteral(BigDecimal.valueOf(i))));
+        }
+        Ast decoded = BinaryAst.decode(ByteBuffer.wrap(BinaryAst.encode(ast)));
+        for (int i = 100000 - 1; i >= 0; i--) {
+            List<Ast> args = ((Ast.Term) decoded).getArgs();
+            Assertions.assertEquals(new Ast.NumberLiteral(BigDecimal.valueOf(i)), args.get(1));
+            decoded = args.get(0);
+        }
+        Assertions.assertEquals(new Ast.Term("f", Arrays.asList()), decoded);
+    }
+
+    @Test
+    void testBinaryAstMalformed() {
+        byte[] bytes = BinaryAst.encode(new Ast.Term("f", Arrays.asList(new Ast.Identifier("x"))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryAst.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        bytes[0] = 0;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryAst.decode(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void testAstFactory() {
+        AstFactory factory = new AstFactory();
+        Ast first = source(new Ast.Term("+", Arrays.asList(new Ast.Identifier("x"), new Ast.Identifier("x"))));
+        Ast second = source(new Ast.Term("+", Arrays.asList(new Ast.Identifier("x"), new Ast.Identifier("x"))));
+        Assertions.assertEquals(first.hashCode(), second.hashCode());
+        Ast.Term canonical = factory.intern((Ast.Term) first);
+        Assertions.assertEquals(first, canonical);
+        Assertions.assertSame(canonical, factory.intern(second));
+        List<Ast> args = ((Ast.Term) canonical.getArgs().get(0)).getArgs();
+        Assertions.assertSame(args.get(0), args.get(1));
+        Assertions.assertSame(args.get(0), factory.identifier("x"));
+        Assertions.assertSame(canonical.getArgs().get(0), factory.term("+", Arrays.asList(factory.identifier("x"), new Ast.Identifier("x"))));
+        Assertions.assertEquals(3, factory.size());
+    }
+
+    @Test
+    void testAstFactorySpans() {
+        AstFactory factory = new AstFactory();
+        List<Token> tokens = Arrays.asList(
+                new Token(Token.Type.OPERATOR, "(", 0),
+                new Token(Token.Type.IDENTIFIER, "f", 1),
+                new Token(Token.Type.IDENTIFIER, "x", 3),
+                new Token(Token.Type.OPERATOR, "(", 5),
+                new Token(Token.Type.IDENTIFIER, "g", 6),
+                new Token(Token.Type.IDENTIFIER, "x", 8),
+                new Token(Token.Type.OPERATOR, ")", 9),
+                new Token(Token.Type.OPERATOR, ")", 10)
+        );
+        Ast.Term parsed = (Ast.Term) ((Ast.Term) Parser.parseIterative(tokens)).getArgs().get(0);
+        Assertions.assertNotEquals(Span.NONE, parsed.getArgs().get(0).getSpan());
+        Ast.Term canonical = factory.intern(parsed);
+        Assertions.assertEquals(parsed, canonical);
+        Assertions.assertEquals(Span.NONE, canonical.getSpan());
+        Assertions.assertEquals(Span.NONE, canonical.getArgs().get(0).getSpan());
+        Assertions.assertEquals(Span.NONE, canonical.getArgs().get(1).getSpan());
+        Assertions.assertNotSame(parsed.getArgs().get(0), canonical.getArgs().get(0));
+    }
+
+    @Test
+    void testAstFactoryDeepNesting() {
+        AstFactory factory = new AstFactory();
+        Ast first = new Ast.Term("f", Arrays.asList());
+        Ast second = new Ast.Term("f", Arrays.asList());
+        for (int i = 0; i < 100000; i++) {
+            first = new Ast.Term("f", Arrays.asList(first));
+            second = new Ast.Term("f", Arrays.asList(second));
+        }
+        Assertions.assertSame(factory.intern(first), factory.intern(second));
+        Assertions.assertEquals(100001, factory.size());
+    }
+
+    @Test
+    void testSpans() {
+        String input = "(print x)\n[list 1\n  \"two\"]";
+        List<Token> tokens = Arrays.asList(
+                new Token(Token.Type.OPERATOR, "(", 0),
+                new Token(Token.Type.IDENTIFIER, "print", 1),
+                new Token(Token.Type.IDENTIFIER, "x", 7),
+                new Token(Token.Type.OPERATOR, ")", 8),
+                new Token(Token.Type.OPERATOR, "[", 10),
+                new Token(Token.Type.IDENTIFIER, "list", 11),
+                new Token(Token.Type.NUMBER, "1", 16),
+                new Token(Token.Type.STRING, "\"two\"", 20),
+                new Token(Token.Type.OPERATOR, "]", 25)
+        );
+        Ast.Term ast = (Ast.Term) Parser.parseIterative(tokens);
+        Ast.Term list = (Ast.Term) ast.getArgs().get(1);
+        Assertions.assertEquals(Span.of(0, input.length()), ast.getSpan());
+        Assertions.assertEquals(Span.of(0, 9), ast.getArgs().get(0).getSpan());
+        Assertions.assertEquals(Span.of(20, 25), list.getArgs().get(1).getSpan());
+        SourceFile file = new SourceFile("test.wsp", input);
+        Assertions.assertEquals("test.wsp:2:1", file.format(list.getSpan()));
+        Assertions.assertEquals("test.wsp:3:3", file.format(list.getArgs().get(1).getSpan()));
+        Assertions.assertEquals(3, file.getLine(input.length()));
+        Ast.Term decoded = (Ast.Term) BinaryAst.decode(ByteBuffer.wrap(BinaryAst.encode(ast)));
+        Assertions.assertEquals(list.getSpan(), decoded.getArgs().get(1).getSpan());
+        Assertions.assertEquals(Span.NONE, new Ast.Identifier("x").getSpan());
+    }
+
+    @Test
+    void testSourceFileLineEndings() {
+        SourceFile file = new SourceFile("test", "a\r\nb\rc\nd");
+        Assertions.assertEquals(4, file.getLineCount());
+        Assertions.assertEquals(1, file.getLine(1));
+        Assertions.assertEquals(2, file.getLine(3));
+        Assertions.assertEquals(3, file.getLine(5));
+        Assertions.assertEquals(4, file.getLine(7));
+        Assertions.assertEquals(1, file.getColumn(7));
+    }
+
+    private static Ast source(Ast... args) {
+        return new Ast.Term("source", Arrays.asList(args));
+    }
+
+}
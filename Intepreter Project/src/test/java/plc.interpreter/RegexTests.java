@@ -5,6 +5,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -219,14 +224,100 @@ public class RegexTests {
     }
 
 
+    @ParameterizedTest
+    @MethodSource
+    public void testLinearEngine(String test, String input, Pattern pattern, boolean success) {
+        Assertions.assertEquals(success, Regex.matches(pattern, input, Regex.Engine.LINEAR));
+    }
+
+    public static Stream<Arguments> testLinearEngine() {
+        return Stream.of(
+                Arguments.of("Long String", "\"" + repeat("a\\n", 100000) + "\"", Regex.STRING, true),
+                Arguments.of("Long Unterminated String", "\"" + repeat("\\n", 100000), Regex.STRING, false),
+                Arguments.of("Long Even String", repeat("ab", 100000), Regex.EVEN_STRINGS, false),
+                Arguments.of("Long Integer List", "[1" + repeat(", 1", 100000) + "]", Regex.INTEGER_LIST, true),
+                Arguments.of("Long Invalid Integer List", "[1" + repeat(",  1", 100000) + "]", Regex.INTEGER_LIST, false),
+                Arguments.of("Long Identifier", "_" + repeat("a", 100000) + ";", Regex.IDENTIFIER, false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void testBulkValidation(String test, Regex.Engine engine, int chunkSize) throws IOException {
+        String input = "thelegend27@gmail.com\r\n" +
+                "missingdot@gmailcom\n" +
+                "\n" +
+                "otherdomain@ufl.edu\n" +
+                "caf\u00e9@gmail.com\n" +
+                "test@company.org";
+        Path path = Files.createTempFile("emails", ".txt");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            BulkValidator.Report report = new BulkValidator(Regex.EMAIL, engine, ForkJoinPool.commonPool(), chunkSize).validate(path);
+            Assertions.assertEquals(6, report.getLines());
+            Assertions.assertEquals(3, report.getMatched());
+            Assertions.assertArrayEquals(new long[] {23, 43, 64}, report.getRejectedOffsets());
+            Assertions.assertEquals(input.getBytes(StandardCharsets.UTF_8).length, report.getBytes());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public static Stream<Arguments> testBulkValidation() {
+        return Stream.of(
+                Arguments.of("Backtracking Single Chunk", Regex.Engine.BACKTRACKING, 1 << 20),
+                Arguments.of("Linear Single Chunk", Regex.Engine.LINEAR, 1 << 20),
+                Arguments.of("Backtracking Small Chunks", Regex.Engine.BACKTRACKING, 5),
+                Arguments.of("Linear Small Chunks", Regex.Engine.LINEAR, 7)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void testBulkValidationLongLines(String test, Regex.Engine engine, int chunkSize) throws IOException {
+        String local = repeat("a", 3 * BulkValidator.SLACK);
+        String input = "short@ufl.edu\n" +
+                local + "@ufl.edu\n" +
+                local + "@ufl\n" +
+                "last@ufl.edu";
+        Path path = Files.createTempFile("emails", ".txt");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            BulkValidator.Report report = new BulkValidator(Regex.EMAIL, engine, ForkJoinPool.commonPool(), chunkSize).validate(path);
+            Assertions.assertEquals(4, report.getLines());
+            Assertions.assertEquals(3, report.getMatched());
+            Assertions.assertArrayEquals(new long[] {14 + local.length() + 9}, report.getRejectedOffsets());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public static Stream<Arguments> testBulkValidationLongLines() {
+        return Stream.of(
+                Arguments.of("Backtracking Single Chunk", Regex.Engine.BACKTRACKING, 1 << 20),
+                Arguments.of("Linear Single Chunk", Regex.Engine.LINEAR, 1 << 20),
+                Arguments.of("Backtracking Small Chunks", Regex.Engine.BACKTRACKING, 1000),
+                Arguments.of("Linear Small Chunks", Regex.Engine.LINEAR, 1000)
+        );
+    }
+
     /**
-     * Asserts that the input matches the given pattern and returns the matcher
-     * for additional assertions.
+     * Asserts that the input matches the given pattern with both engines and
+     * returns the matcher for additional assertions.
      */
     private static Matcher test(String input, Pattern pattern, boolean success) {
         Matcher matcher = pattern.matcher(input);
         Assertions.assertEquals(success, matcher.matches());
+        Assertions.assertEquals(success, Regex.matches(pattern, input, Regex.Engine.LINEAR));
         return matcher;
     }
 
+    private static String repeat(String string, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(string);
+        }
+        return builder.toString();
+    }
+
 }
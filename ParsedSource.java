@@ -0,0 +1,256 @@
+package plc.compiler;
+
+import plc.interpreter.Span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parsed source file which can be edited and reparsed incrementally, for
+ * tooling which reparses on every keystroke.
+ *
+ * Along with the tokens and AST, each top-level statement records the token
+ * it starts at and its horizon, the end of the tokens the parser examined
+ * while parsing it. After an edit, the tokens are re-lexed with {@link
+ * Lexer#relex(TokenBuffer, int, int, String)} and statements whose horizon
+ * is before the first changed token are reused. Parsing restarts after them
+ * and stops as soon as it reaches (past the edit) the start of a statement
+ * of the previous parse, since the rest of the tokens are unchanged and
+ * would parse identically; those statements are reused as well. Reused
+ * statements are the same instances as before, and the amount of parsing
+ * depends on the size of the edit and of the top-level statements (such as
+ * an {@code IF} or {@code WHILE} block) enclosing it, not of the file.
+ *
+ * Since reused statements are not modified, the spans of the nodes in a
+ * statement after an edit are off by the length the text before it changed
+ * by; see {@link #getShift(int)}.
+ */
+public final class ParsedSource {
+
+    private final TokenBuffer tokens;
+    private final Ast.Source ast;
+    /**
+     * The token each statement starts at, followed by the token at which the
+     * source loop stopped.
+     */
+    private final int[] starts;
+    /**
+     * The running maximum of the horizons of the statements, with the
+     * horizon of the final check of the source loop at the end.
+     */
+    private final int[] horizons;
+    /**
+     * The number of characters to add to the spans in each statement.
+     */
+    private final int[] shifts;
+
+    private ParsedSource(TokenBuffer tokens, Ast.Source ast, int[] starts, int[] horizons, int[] shifts) {
+        this.tokens = tokens;
+        this.ast = ast;
+        this.starts = starts;
+        this.horizons = horizons;
+        this.shifts = shifts;
+    }
+
+    public static ParsedSource parse(String source) throws ParseException {
+        TokenBuffer tokens = Lexer.lexBuffer(source);
+        Builder builder = new Builder(tokens, null);
+        builder.parse(0, null);
+        return builder.build();
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public Ast.Source getAst() {
+        return ast;
+    }
+
+    /**
+     * Returns the number of characters to add to the spans of the nodes in
+     * the given top-level statement to get their offsets in the current
+     * source. This is zero unless the statement was reused after an edit
+     * which changed the length of the text before it.
+     */
+    public int getShift(int statement) {
+        return shifts[statement];
+    }
+
+    /**
+     * Returns the source after replacing {@code removed} characters at
+     * {@code offset} with {@code inserted}, reparsing only what the edit may
+     * have affected. This source is not modified, so it is still valid if the
+     * edit fails to lex or parse.
+     */
+    public ParsedSource edit(int offset, int removed, String inserted) throws ParseException {
+        TokenBuffer edited = Lexer.relex(tokens, offset, removed, inserted);
+        int first = tokens.findEnd(offset);
+        int kept = reusable(first);
+        if (kept == starts.length) {
+            return new ParsedSource(edited, ast, starts, horizons, shifts);
+        }
+        Builder builder = new Builder(edited, this);
+        builder.statements.addAll(ast.getStatements().subList(0, kept));
+        for (int i = 0; i < kept; i++) {
+            builder.add(starts[i], horizons[i], shifts[i]);
+        }
+        builder.parse(starts[kept], tail(edited, first, offset, inserted.length() - removed, inserted.length()));
+        return builder.build();
+    }
+
+    /**
+     * Finds where the re-lexed tokens rejoin the previous ones. Like {@link
+     * Lexer#relex(TokenBuffer, int, int, String)}, this is the first token
+     * past the inserted text which starts where a previous token did (after
+     * adjusting for the edit). Returns null if there is no such token.
+     */
+    private Tail tail(TokenBuffer edited, int first, int offset, int delta, int length) {
+        for (int i = first; i < edited.size(); i++) {
+            if (edited.getStart(i) >= offset + length) {
+                int match = tokens.findStart(edited.getStart(i) - delta, first);
+                if (match != -1) {
+                    return new Tail(i, i - match, delta);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of entries (statements, and the final check of the
+     * source loop) which only examined tokens before the given one.
+     */
+    private int reusable(int first) {
+        int low = 0;
+        int high = horizons.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (horizons[mid] <= first) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The tokens after an edit which are unchanged from the previous parse:
+     * the new tokens from {@code resume} on are the previous ones, with their
+     * indices shifted by {@code shift} and their offsets by {@code delta}.
+     */
+    private static final class Tail {
+
+        private final int resume;
+        private final int shift;
+        private final int delta;
+
+        private Tail(int resume, int shift, int delta) {
+            this.resume = resume;
+            this.shift = shift;
+            this.delta = delta;
+        }
+
+    }
+
+    /**
+     * Collects the statements, starts and horizons of a new parse.
+     */
+    private static final class Builder {
+
+        private final Parser parser;
+        private final TokenBuffer tokens;
+        private final ParsedSource previous;
+        private final List<Ast.Statement> statements;
+        private int[] starts;
+        private int[] horizons;
+        private int[] shifts;
+        private int size = 0;
+        private int end = -1;
+
+        private Builder(TokenBuffer tokens, ParsedSource previous) {
+            int capacity = previous != null ? previous.starts.length + 16 : 16;
+            this.parser = new Parser(tokens);
+            this.tokens = tokens;
+            this.previous = previous;
+            this.statements = new ArrayList<>(capacity);
+            this.starts = new int[capacity];
+            this.horizons = new int[capacity];
+            this.shifts = new int[capacity];
+        }
+
+        /**
+         * Parses statements from the given token, reusing the previous
+         * statements once parsing reaches the start of one in the tail.
+         */
+        private void parse(int start, Tail tail) throws ParseException {
+            int position = start;
+            int horizon = size > 0 ? horizons[size - 1] : 0;
+            while (true) {
+                if (tail != null && position >= tail.resume) {
+                    int old = Arrays.binarySearch(previous.starts, position - tail.shift);
+                    if (old >= 0) {
+                        reuse(old, tail, horizon);
+                        return;
+                    }
+                }
+                parser.setPosition(position);
+                boolean more = parser.parseSourceStatement(statements);
+                horizon = Math.max(horizon, parser.getHorizon());
+                add(position, horizon, 0);
+                if (!more) {
+                    int last = Math.min(parser.getPosition(), tokens.size()) - 1;
+                    end = last >= 0 ? tokens.getIndex(last) + tokens.getLength(last) : -1;
+                    return;
+                }
+                position = parser.getPosition();
+            }
+        }
+
+        /**
+         * Reuses the previous statements from {@code old} on, along with the
+         * final check of the source loop.
+         */
+        private void reuse(int old, Tail tail, int horizon) {
+            List<Ast.Statement> reused = previous.ast.getStatements();
+            for (int i = old; i < previous.starts.length; i++) {
+                horizon = Math.max(horizon, previous.horizons[i] + tail.shift);
+                if (i < reused.size()) {
+                    statements.add(reused.get(i));
+                }
+                add(previous.starts[i] + tail.shift, horizon, previous.shifts[i] + tail.delta);
+            }
+            long span = previous.ast.getSpan();
+            end = span != Span.NONE ? Span.getEnd(span) + tail.delta : -1;
+        }
+
+        private void add(int start, int horizon, int shift) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                horizons = Arrays.copyOf(horizons, size * 2);
+                shifts = Arrays.copyOf(shifts, size * 2);
+            }
+            starts[size] = start;
+            horizons[size] = horizon;
+            shifts[size] = shift;
+            size++;
+        }
+
+        /**
+         * Builds the parsed source, which spans the tokens the source loop
+         * consumed like a source parsed from scratch.
+         */
+        private ParsedSource build() {
+            Ast.Source ast = new Ast.Source(statements);
+            if (end != -1) {
+                ast.setSpan(Span.of(tokens.getIndex(0), end));
+            }
+            return new ParsedSource(tokens, ast, Arrays.copyOf(starts, size),
+                    Arrays.copyOf(horizons, size), Arrays.copyOf(shifts, size));
+        }
+
+    }
+
+}
@@ -1,8 +1,11 @@
 package plc.compiler;
 
+import plc.interpreter.Span;
+
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,10 +24,42 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    static final int EQUALITY = 10;
+    static final int ADDITIVE = 20;
+    static final int MULTIPLICATIVE = 30;
+
+    /**
+     * The binary operators and their binding powers. The array is replaced
+     * rather than modified when an operator is registered, so parsers never
+     * need to lock it.
+     */
+    private static volatile Operator[] OPERATORS = {
+            new Operator("==", EQUALITY),
+            new Operator("!=", EQUALITY),
+            new Operator("+", ADDITIVE),
+            new Operator("-", ADDITIVE),
+            new Operator("*", MULTIPLICATIVE),
+            new Operator("/", MULTIPLICATIVE),
+    };
+
     private final TokenStream tokens;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this(TokenBuffer.of(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new TokenStream(tokens, null);
+    }
+
+    /**
+     * Creates a parser which pulls tokens from the source only as it needs
+     * them, such as from a lexer running on another thread. Combined with
+     * {@link #release()}, only the tokens of the current top-level statement
+     * are held in memory.
+     */
+    public Parser(TokenSource tokens) {
+        this.tokens = new TokenStream(TokenBuffer.of(new ArrayList<>()), tokens);
     }
 
     /**
@@ -34,24 +69,109 @@ public final class Parser {
         return new Parser(tokens).parseSource();
     }
 
+    /**
+     * Parses the tokens in the buffer and returns the parsed AST.
+     */
+    public static Ast parse(TokenBuffer tokens) throws ParseException {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Registers a binary operator with the given binding power, which must be
+     * positive. Operators with a higher power bind more tightly; the built in
+     * powers are {@link #EQUALITY}, {@link #ADDITIVE} and {@link
+     * #MULTIPLICATIVE}. The lexer must emit the operator as a single OPERATOR
+     * token.
+     */
+    public static synchronized void registerOperator(String symbol, int power) {
+        if (power <= 0) {
+            throw new IllegalArgumentException("Invalid binding power " + power + " for operator " + symbol + ".");
+        }
+        for (Operator operator : OPERATORS) {
+            if (operator.symbol.equals(symbol)) {
+                throw new IllegalArgumentException("Duplicate registration of operator " + symbol + ".");
+            }
+        }
+        Operator[] operators = Arrays.copyOf(OPERATORS, OPERATORS.length + 1);
+        operators[operators.length - 1] = new Operator(symbol, power);
+        OPERATORS = operators;
+    }
+
+    /**
+     * Returns the registered operators and their binding powers, such as
+     * {@code "==:10 !=:10 ..."}, in registration order.
+     */
+    static String getOperators() {
+        StringBuilder builder = new StringBuilder();
+        for (Operator operator : OPERATORS) {
+            builder.append(operator.symbol).append(':').append(operator.power).append(' ');
+        }
+        return builder.toString();
+    }
+
     /**
      * Parses the {@code source} rule.
      */
     public Ast.Source parseSource() throws ParseException { // DONE
 
+        int start = tokens.index;
         List<Ast.Statement> statements = new ArrayList<Ast.Statement>();
-        while(tokens.has(0)){
-            if(tokens.get(0).getLiteral().equals(";")){
-                tokens.advance();
-                break;
-            }
-            statements.add(parseStatement());
+        while (parseSourceStatement(statements)) {
+        }
+        return span(new Ast.Source(statements), start);
+    }
+
+    /**
+     * Runs one iteration of the {@code source} loop at the current position,
+     * adding the parsed statement to the list. Returns false instead if the
+     * source ends here, either because there are no tokens left or because
+     * the next token is a {@code ;}.
+     */
+    boolean parseSourceStatement(List<Ast.Statement> statements) throws ParseException {
+        if (!tokens.has(0)) {
+            return false;
+        } else if (tokens.literalEquals(0, ";")) {
             tokens.advance();
+            return false;
+        }
+        statements.add(parseStatement());
+        tokens.advance();
+        return true;
+    }
+
+    /**
+     * Returns the index of the current token.
+     */
+    int getPosition() {
+        return tokens.index;
+    }
 
+    /**
+     * Moves to the given token and resets the horizon to it.
+     */
+    void setPosition(int index) {
+        tokens.index = index;
+        tokens.horizon = index;
+    }
 
+    /**
+     * Returns one past the index of the furthest token examined since the
+     * last {@link #setPosition(int)}, including the ones only checked for
+     * existence. Whatever was parsed since then depends only on the tokens
+     * before the horizon. Used by {@link ParsedSource}.
+     */
+    int getHorizon() {
+        return tokens.horizon;
+    }
 
-        }
-        return new Ast.Source(statements);
+    /**
+     * Discards the tokens before the current one, which a parser reading from
+     * a {@link TokenSource} does not need once it is between top-level
+     * statements. Positions stay the same, but the parser can no longer be
+     * moved back before the current token.
+     */
+    void release() {
+        tokens.release();
     }
 
     /**
@@ -61,17 +181,26 @@ public final class Parser {
      * clarification on what starts each type of statement.
      */
     public Ast.Statement parseStatement() throws ParseException { // DONE
-        if(peek("LET")){
-           return parseDeclarationStatement();
+        int start = tokens.index;
+        return span(parseStatementRule(), start);
+    }
+
+    private Ast.Statement parseStatementRule() throws ParseException {
+        Keyword keyword = tokens.has(0) ? tokens.getKeyword(0) : null;
+        if (keyword != null) {
+            switch (keyword) {
+                case LET:
+                    return parseDeclarationStatement();
+                case IF:
+                    tokens.advance();
+                    return parseIfStatement();
+                case WHILE:
+                    tokens.advance();
+                    return parseWhileStatement();
+            }
         }
-        else if(peek("IF")){
-            tokens.advance();
-            return parseIfStatement();
-        }else if(peek("WHILE")){
-            tokens.advance();
-             return parseWhileStatement();
-        }else if(peek(Token.Type.IDENTIFIER)){
-            if(tokens.get(1).getLiteral() != "="){
+        if(peek(Token.Type.IDENTIFIER)){
+            if(!peek(Token.Type.IDENTIFIER, "=")){
                 return parseExpressionStatement();
             }
             return parseAssignmentStatement();
@@ -94,7 +223,7 @@ public final class Parser {
      * called if the next tokens start a declaration statement, aka {@code let}.
      */
     public Ast.Statement.Declaration parseDeclarationStatement() throws ParseException {
-        if(peek("LET")){
+        if(peek(Keyword.LET)){
             String name = "";
             String type = "";
 
@@ -157,13 +286,13 @@ public final class Parser {
     public Ast.Statement.If parseIfStatement() throws ParseException {
         String placeholder = "";
         Ast.Expression condition = parseExpression();
-        if(peek("THEN")){
+        if(peek(Keyword.THEN)){
             tokens.advance();
             List<Ast.Statement> thenStatements = new ArrayList<Ast.Statement>();
             List<Ast.Statement> elseStatements = new ArrayList<Ast.Statement>();
             boolean elseconfirmed = false;
-            while(!peek("END")){
-                if(tokens.get(0).getLiteral().equals("ELSE")){
+            while(!peek(Keyword.END)){
+                if(peek(Keyword.ELSE)){
                     elseconfirmed = true;
                     tokens.advance();
                 }
@@ -193,10 +322,10 @@ public final class Parser {
     public Ast.Statement.While parseWhileStatement() throws ParseException {
         String placeholder = "";
         Ast.Expression condition = parseExpression();
-        if(peek("DO")){
+        if(peek(Keyword.DO)){
             tokens.advance();
             List<Ast.Statement> statements = new ArrayList<Ast.Statement>();
-            while(!peek("END")){
+            while(!peek(Keyword.END)){
                 Ast.Statement state = parseStatement();
                 statements.add(state);
                 tokens.advance();
@@ -214,168 +343,66 @@ public final class Parser {
      * Parses the {@code expression} rule.
      */
     public Ast.Expression parseExpression() throws ParseException {
-        String placeholder = "";
-        Ast.Expression express = new Ast.Expression.Literal(placeholder);
-        if(peek(Token.Type.DECIMAL)){
-            express = new Ast.Expression.Literal(new BigDecimal(tokens.get(0).getLiteral()));
-            tokens.advance();
-            if(peek(Token.Type.IDENTIFIER)){
-                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-            }
-        }else if(peek(Token.Type.INTEGER)){
-            express = new Ast.Expression.Literal(new BigInteger(tokens.get(0).getLiteral()));
-            tokens.advance();
-            if(peek(Token.Type.IDENTIFIER)){
-                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-            }
-        }else if(peek(Token.Type.STRING)){
-            String lit = tokens.get(0).getLiteral();
-            String sub = lit.substring(1,lit.length()-1);
-            express = new Ast.Expression.Literal(sub);
-            tokens.advance();
-            if(peek(Token.Type.IDENTIFIER)){
-                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-            }
-        }else if(peek(Token.Type.IDENTIFIER) && !peek("TRUE") && !peek("FALSE")){
-            Token ident = tokens.get(0);
-            express = new Ast.Expression.Variable(tokens.get(0).getLiteral());
-            tokens.advance();
-            if(peek(Token.Type.IDENTIFIER)){
-                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-            }else if(peek("(")){
-                tokens.advance();
-                List<Ast.Expression> args = new ArrayList<Ast.Expression>();
-                while(!peek(")")){
-                    if(peek(",")){
-                        tokens.advance();
-                    }
-                    args.add(parseExpression());
-                }
-                express = new Ast.Expression.Function(ident.getLiteral(), args);
-            }
-        }else if(peek("TRUE")){
-            express = new Ast.Expression.Literal(true);
-            tokens.advance();
-//            if(peek(";")){
-//                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-//            }
-        }else if(peek("FALSE")){
-            express = new Ast.Expression.Literal(false);
-            tokens.advance();
-//            if(peek(";")){
-//                return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-//            }
-        }else if(peek("(")){
-            tokens.advance();
-            express =  new Ast.Expression.Group(parseExpression());
-            if(peek(")")){
-                tokens.advance();
-            }
-        }
-        boolean twoarg = false;
-        Ast.Expression express2 = new Ast.Expression.Literal(placeholder);
-        Token token = new Token(Token.Type.OPERATOR,"-",0);
-        if(peek("*") ||peek("/")){
-            token = tokens.get(0);
-            express2 = parseMultiplicativeExpression();
-            twoarg = true;
-        }else if(peek("==") ||peek("!=") ){
-            token = tokens.get(0);
-            express2 = parseEqualityExpression();
-            twoarg = true;
-        }else if(peek("+") || peek("-")){
-            token = tokens.get(0);
-            express2 = parseAdditiveExpression();
-            twoarg = true;
-        }
-        if(twoarg == false) {
-            return express;
-        }
-        else{
-            return new Ast.Expression.Binary(token.getLiteral(),express,express2);
-        }
-
+        return parseExpression(0);
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expression parseEqualityExpression() throws ParseException {
-        String placeholder = "";
-        Ast.Expression e0 = new Ast.Expression.Literal(placeholder);
-        Token operator = new Token(Token.Type.OPERATOR,"-",0);
-        if (peek("==") ||peek("!=")) {
-            tokens.advance();
-            e0 = parsePrimaryExpression();
-        } else throw new ParseException("Invalid Equality Expression", tokens.index);
-        boolean valid = true;
-        while (valid == true) {
-            if (peek("==") ||peek("!=")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseEqualityExpression());
-            } else if (peek("+") || peek("-")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseAdditiveExpression());
-            } else {
-                valid = false;
-                break;
-            }
-        }
-        return e0;
+        return parseExpression(0);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        String placeholder = "";
-        Ast.Expression e0 = new Ast.Expression.Literal(placeholder);
-        Token operator = new Token(Token.Type.OPERATOR,"-",0);
-        if (peek("-") ||peek("+")) {
-            tokens.advance();
-            e0 = parsePrimaryExpression();
-        } else throw new ParseException("Invalid Equality Expression", tokens.index);
-        boolean valid = true;
-        while (valid == true) {
-            if (peek("*") ||peek("/")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseMultiplicativeExpression());
-            } else if (peek("-") ||peek("+")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseAdditiveExpression());
-            } else {
-                valid = false;
-                break;
-            }
-        }
-        return e0;
+        return parseExpression(EQUALITY);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
-        String placeholder = "";
-        Ast.Expression e0 = new Ast.Expression.Literal(placeholder);
-        Token operator = new Token(Token.Type.OPERATOR,"-",0);
-        if (peek("*") ||peek("/")) {
+        return parseExpression(ADDITIVE);
+    }
+
+    /**
+     * Parses an expression whose binary operators all bind more tightly than
+     * {@code power}, using the binding powers of {@link #OPERATORS}.
+     *
+     * Each operand is parsed by a single call to {@link
+     * #parsePrimaryExpression()}, and a run of operators of the same power is
+     * consumed by the loop instead of by recursion, so long chains such as
+     * {@code a + b + c + ...} use constant stack depth. Since the right operand
+     * only takes operators that bind more tightly, operators of equal power
+     * associate to the left.
+     */
+    private Ast.Expression parseExpression(int power) throws ParseException {
+        int start = tokens.index;
+        Ast.Expression left = parsePrimaryExpression();
+        Operator operator;
+        while ((operator = peekOperator()) != null && operator.power > power) {
             tokens.advance();
-            e0 = parsePrimaryExpression();
-        } else throw new ParseException("Invalid Equality Expression", tokens.index);
-        boolean valid = true;
-        while (valid == true) {
-            if (peek("*") ||peek("/")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseMultiplicativeExpression());
-            } else if (peek("+") ||peek("-")) {
-                operator = tokens.get(0);
-                e0 = new Ast.Expression.Binary(operator.getLiteral(),e0,parseAdditiveExpression());
-            } else {
-                valid = false;
-                break;
+            left = span(new Ast.Expression.Binary(operator.symbol, left, parseExpression(operator.power)), start);
+        }
+        return left;
+    }
+
+    /**
+     * Returns the binary operator of the next token, or {@code null} if it is
+     * not a registered operator.
+     */
+    private Operator peekOperator() {
+        if (!peek(Token.Type.OPERATOR)) {
+            return null;
+        }
+        for (Operator operator : OPERATORS) {
+            if (tokens.literalEquals(0, operator.symbol)) {
+                return operator;
             }
         }
-        return e0;
+        return null;
     }
 
     /**
@@ -385,6 +412,11 @@ public final class Parser {
      * not strictly necessary.
      */
     public Ast.Expression parsePrimaryExpression() throws ParseException {
+        int start = tokens.index;
+        return span(parsePrimaryRule(), start);
+    }
+
+    private Ast.Expression parsePrimaryRule() throws ParseException {
         if(peek(Token.Type.DECIMAL)){
                 tokens.advance();
                 return new Ast.Expression.Literal(new BigDecimal(tokens.get(-1).getLiteral()));
@@ -396,7 +428,7 @@ public final class Parser {
             String lit = tokens.get(-1).getLiteral();
             String sub = lit.substring(1,lit.length()-1);
             return new Ast.Expression.Literal(sub);
-        }else if(peek(Token.Type.IDENTIFIER) && !peek("TRUE") && !peek("FALSE")){
+        }else if(peek(Token.Type.IDENTIFIER) && !peek(Keyword.TRUE) && !peek(Keyword.FALSE)){
             tokens.advance();
             Token ident = tokens.get(-1);
              if(peek("(")){
@@ -409,13 +441,14 @@ public final class Parser {
                     args.add(parseExpression());
 
                 }
+                tokens.advance();
                 return new Ast.Expression.Function(ident.getLiteral(), args);
             }
             return new Ast.Expression.Variable(tokens.get(-1).getLiteral());
-        }else if(peek("TRUE")){
+        }else if(peek(Keyword.TRUE)){
             tokens.advance();
             return new Ast.Expression.Literal(true);
-        }else if(peek("FALSE")){
+        }else if(peek(Keyword.FALSE)){
             tokens.advance();
             return new Ast.Expression.Literal(false);
         }else if(peek("(")){
@@ -429,26 +462,42 @@ public final class Parser {
         }else throw new ParseException("Invalid Primary Expression", tokens.index);
     }
 
+    /**
+     * Sets the span of the node to the source of the tokens from {@code
+     * start} up to (but excluding) the current token, and returns it.
+     */
+    private <T extends Ast> T span(T ast, int start) {
+        ast.setSpan(tokens.span(start));
+        return ast;
+    }
+
     /**
      * As in the lexer, returns {@code true} if the current sequence of tokens
      * matches the given patterns. Unlike the lexer, the pattern is not a regex;
      * instead it is either a {@link Token.Type}, which matches if the token's
-     * type is the same, or a {@link String}, which matches if the token's
-     * literal is the same.
+     * type is the same, a {@link Keyword}, which matches if the token is that
+     * keyword, or a {@link String}, which matches if the token's literal is the
+     * same.
      *
      * In other words, {@code Token(IDENTIFIER, "literal")} is matched by both
-     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}.
+     * {@code peek(Token.Type.IDENTIFIER)} and {@code peek("literal")}, and
+     * {@code Token(IDENTIFIER, "LET")} is also matched by {@code
+     * peek(Keyword.LET)}.
      */
     private boolean peek(Object... patterns) {
         for (int i = 0; i < patterns.length; i++) {
             if (!tokens.has(i)) {
                 return false;
             } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
+                if (patterns[i] != tokens.getType(i)) {
+                    return false;
+                }
+            } else if (patterns[i] instanceof Keyword) {
+                if (patterns[i] != tokens.getKeyword(i)) {
                     return false;
                 }
             } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
+                if (!tokens.literalEquals(i, (String) patterns[i])) {
                     return false;
                 }
             } else {
@@ -472,27 +521,116 @@ public final class Parser {
         return peek;
     }
 
+    private static final class Operator {
+
+        private final String symbol;
+        private final int power;
+
+        private Operator(String symbol, int power) {
+            this.symbol = symbol;
+            this.power = power;
+        }
+
+    }
+
+    /**
+     * Reads tokens straight out of a {@link TokenBuffer}. {@link #get(int)}
+     * materializes a {@link Token}, so {@link #peek(Object...)} sticks to the
+     * allocation-free {@link #getType(int)} and {@link #literalEquals(int,
+     * String)} instead.
+     *
+     * If there is a {@link TokenSource}, the buffer is filled from it on
+     * demand, and {@link #release()} drops the tokens before the current one;
+     * the buffer then starts at the token {@code base} instead of zero.
+     */
     private static final class TokenStream {
 
-        private final List<Token> tokens;
+        private final TokenSource source;
+        private final TokenBuffer tokens;
+        private int base = 0;
         private int index = 0;
+        private int horizon = 0;
 
-        private TokenStream(List<Token> tokens) {
+        private TokenStream(TokenBuffer tokens, TokenSource source) {
             this.tokens = tokens;
+            this.source = source;
         }
 
         /**
          * Returns true if there is a token at index + offset.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            return at(offset) < tokens.size();
         }
 
         /**
          * Gets the token at index + offset.
          */
         public Token get(int offset) {
-            return tokens.get(index + offset);
+            return tokens.get(at(offset));
+        }
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public Token.Type getType(int offset) {
+            return tokens.getType(at(offset));
+        }
+
+        /**
+         * Gets the keyword of the token at index + offset, or {@code null} if
+         * it is not a keyword.
+         */
+        public Keyword getKeyword(int offset) {
+            return tokens.getKeyword(at(offset));
+        }
+
+        /**
+         * Returns true if the literal of the token at index + offset is equal
+         * to the given string.
+         */
+        public boolean literalEquals(int offset, String literal) {
+            return tokens.literalEquals(at(offset), literal);
+        }
+
+        /**
+         * Returns the position of the token at index + offset within the
+         * buffer, extending the horizon to it and reading it from the source
+         * if needed.
+         */
+        private int at(int offset) {
+            int position = index + offset;
+            horizon = Math.max(horizon, position + 1);
+            if (source != null) {
+                while (position - base >= tokens.size() && source.hasNext()) {
+                    tokens.append(source.next());
+                }
+            }
+            return position - base;
+        }
+
+        /**
+         * Returns the span of the source of the tokens from {@code start} up to
+         * (but excluding) the current token. This only looks at tokens which
+         * were already consumed, so it does not move the horizon.
+         */
+        public long span(int start) {
+            int end = Math.min(index - base, tokens.size()) - 1;
+            if (start - base > end) {
+                return Span.NONE;
+            }
+            return Span.of(tokens.getIndex(start - base), tokens.getIndex(end) + tokens.getLength(end));
+        }
+
+        /**
+         * Drops the tokens before the current one in place if they were read
+         * from a source, advancing {@code base} to the current index.
+         */
+        public void release() {
+            if (source != null && index > base) {
+                tokens.drop(Math.min(index - base, tokens.size()));
+                base = index;
+            }
         }
 
         /**
@@ -5,12 +5,25 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import plc.interpreter.SourceFile;
+import plc.interpreter.Span;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -291,6 +304,56 @@ final class ParserTests {
                                 new Ast.Expression.Variable("expr1"),
                                 new Ast.Expression.Variable("expr2")
                         )
+                ),
+                Arguments.of("Precedence",
+                        Arrays.asList(
+                                new Token(Token.Type.IDENTIFIER, "expr1", -1),
+                                new Token(Token.Type.OPERATOR, "*", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr2", -1),
+                                new Token(Token.Type.OPERATOR, "+", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr3", -1),
+                                new Token(Token.Type.OPERATOR, "==", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr4", -1)
+                        ),
+                        new Ast.Expression.Binary("==",
+                                new Ast.Expression.Binary("+",
+                                        new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Variable("expr1"),
+                                                new Ast.Expression.Variable("expr2")
+                                        ),
+                                        new Ast.Expression.Variable("expr3")
+                                ),
+                                new Ast.Expression.Variable("expr4")
+                        )
+                ),
+                Arguments.of("Left Associativity",
+                        Arrays.asList(
+                                new Token(Token.Type.IDENTIFIER, "expr1", -1),
+                                new Token(Token.Type.OPERATOR, "-", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr2", -1),
+                                new Token(Token.Type.OPERATOR, "-", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr3", -1)
+                        ),
+                        new Ast.Expression.Binary("-",
+                                new Ast.Expression.Binary("-",
+                                        new Ast.Expression.Variable("expr1"),
+                                        new Ast.Expression.Variable("expr2")
+                                ),
+                                new Ast.Expression.Variable("expr3")
+                        )
+                ),
+                Arguments.of("Function Operand",
+                        Arrays.asList(
+                                new Token(Token.Type.IDENTIFIER, "name", -1),
+                                new Token(Token.Type.OPERATOR, "(", -1),
+                                new Token(Token.Type.OPERATOR, ")", -1),
+                                new Token(Token.Type.OPERATOR, "/", -1),
+                                new Token(Token.Type.INTEGER, "2", -1)
+                        ),
+                        new Ast.Expression.Binary("/",
+                                new Ast.Expression.Function("name", Arrays.asList()),
+                                new Ast.Expression.Literal(BigInteger.valueOf(2))
+                        )
                 )
         );
     }
@@ -426,6 +489,270 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testBinaryAst(String test, Ast ast) throws IOException {
+        Assertions.assertEquals(ast, BinaryAst.decode(ByteBuffer.wrap(BinaryAst.encode(ast))));
+        Path path = Files.createTempFile("ast", ".bin");
+        try {
+            BinaryAst.write(ast, path);
+            Assertions.assertEquals(ast, BinaryAst.read(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static Stream<Arguments> testBinaryAst() {
+        return Stream.of(
+                Arguments.of("Parsed", new Ast.Source(Arrays.asList(
+                        new Ast.Statement.Declaration("x", "DECIMAL", Optional.empty()),
+                        new Ast.Statement.Declaration("y", "STRING", Optional.of(
+                                new Ast.Expression.Literal("caf\u00e9")
+                        )),
+                        new Ast.Statement.If(
+                                new Ast.Expression.Literal(true),
+                                Arrays.asList(new Ast.Statement.Assignment("x",
+                                        new Ast.Expression.Group(new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Literal(new BigDecimal("-1.50")),
+                                                new Ast.Expression.Literal(new BigInteger("123456789012345678901234567890"))
+                                        ))
+                                )),
+                                Arrays.asList()
+                        ),
+                        new Ast.Statement.While(
+                                new Ast.Expression.Literal(false),
+                                Arrays.asList(new Ast.Statement.Expression(
+                                        new Ast.Expression.Function("PRINT", Arrays.asList(new Ast.Expression.Variable("x")))
+                                ))
+                        )
+                ))),
+                Arguments.of("Analyzed", new Ast.Source(Arrays.asList(
+                        new Ast.Statement.Declaration("x", "INTEGER", Optional.of(
+                                new Ast.Expression.Literal(Stdlib.Type.INTEGER, -23)
+                        )),
+                        new Ast.Statement.Expression(new Ast.Expression.Function(Stdlib.Type.VOID, "System.out.println", Arrays.asList(
+                                new Ast.Expression.Binary(Stdlib.Type.DECIMAL, "+",
+                                        new Ast.Expression.Variable(Stdlib.Type.INTEGER, "x"),
+                                        new Ast.Expression.Literal(Stdlib.Type.DECIMAL, 15.834)
+                                )
+                        )))
+                )))
+        );
+    }
+
+    @Test
+    void testBinaryAstMalformed() {
+        byte[] bytes = BinaryAst.encode(new Ast.Expression.Variable("x"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryAst.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        bytes[0] = 0;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BinaryAst.decode(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void testCompilationCache() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            CompilationCache cache = new CompilationCache(directory, 1 << 20, 16);
+            Ast.Source expected = cache.parse("x = 1 + 2;");
+            Assertions.assertEquals(expected, cache.parse("x = 1 + 2;"));
+            Assertions.assertEquals(1, cache.getMisses());
+            Assertions.assertEquals(1, cache.getMemoryHits());
+            CompilationCache reopened = new CompilationCache(directory, 1 << 20, 16);
+            Assertions.assertEquals(expected, reopened.parse("x = 1 + 2;"));
+            Assertions.assertEquals(1, reopened.getDiskHits());
+            Assertions.assertEquals(0, reopened.getMisses());
+            CompilationCache small = new CompilationCache(directory, 1, 0);
+            small.parse("y = 3;");
+            Assertions.assertEquals(1, small.getMisses());
+            Assertions.assertEquals(2, small.getEvictions());
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testCompilationCacheAnalyze() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        try {
+            String source = "LET x : INTEGER = 1 + 2;";
+            CompilationCache cache = new CompilationCache(directory, 1 << 20, 16);
+            cache.analyze(source);
+            Ast.Source memory = cache.analyze(source);
+            Assertions.assertEquals(1, cache.getMemoryHits());
+            Ast.Source disk = new CompilationCache(directory, 1 << 20, 16).analyze(source);
+            for (Ast.Source ast : Arrays.asList(memory, disk)) {
+                Ast.Statement.Declaration declaration = (Ast.Statement.Declaration) ast.getStatements().get(0);
+                Ast.Expression.Binary value = (Ast.Expression.Binary) declaration.getValue().get();
+                Assertions.assertEquals(Stdlib.Type.INTEGER, value.getType());
+                Assertions.assertEquals(Stdlib.Type.INTEGER, value.getLeft().getType());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void testAstFactory() {
+        AstFactory factory = new AstFactory();
+        Ast.Expression first = new Ast.Expression.Binary("+",
+                new Ast.Expression.Variable("x"),
+                new Ast.Expression.Function("f", Arrays.asList(new Ast.Expression.Variable("x")))
+        );
+        Ast.Expression second = new Ast.Expression.Binary("+",
+                new Ast.Expression.Variable("x"),
+                new Ast.Expression.Function("f", Arrays.asList(new Ast.Expression.Variable("x")))
+        );
+        Assertions.assertEquals(first.hashCode(), second.hashCode());
+        Ast.Expression.Binary canonical = (Ast.Expression.Binary) factory.intern(first);
+        Assertions.assertEquals(first, canonical);
+        Assertions.assertSame(canonical, factory.intern(second));
+        Assertions.assertSame(canonical.getLeft(), ((Ast.Expression.Function) canonical.getRight()).getArguments().get(0));
+        Assertions.assertNotSame(canonical, factory.intern(new Ast.Expression.Binary(Stdlib.Type.INTEGER, "+",
+                new Ast.Expression.Variable("x"),
+                new Ast.Expression.Function("f", Arrays.asList(new Ast.Expression.Variable("x")))
+        )));
+        Assertions.assertEquals(4, factory.size());
+    }
+
+    @Test
+    void testAstFactorySpans() {
+        AstFactory factory = new AstFactory();
+        String source = "x = y + y;\nz = y + y;\n";
+        Ast.Source parsed = (Ast.Source) Parser.parse(Lexer.lexBuffer(source));
+        Ast.Source canonical = factory.intern(parsed);
+        Assertions.assertEquals(parsed, canonical);
+        Ast.Statement.Assignment first = (Ast.Statement.Assignment) canonical.getStatements().get(0);
+        Ast.Statement.Assignment second = (Ast.Statement.Assignment) canonical.getStatements().get(1);
+        Assertions.assertSame(first.getExpression(), second.getExpression());
+        Assertions.assertEquals(Span.NONE, canonical.getSpan());
+        Assertions.assertEquals(Span.NONE, first.getSpan());
+        Assertions.assertEquals(Span.NONE, first.getExpression().getSpan());
+        Assertions.assertEquals(Span.NONE, ((Ast.Expression.Binary) first.getExpression()).getLeft().getSpan());
+    }
+
+    @Test
+    void testParsedSource() {
+        String source = "x = 1;\nWHILE x != 10 DO PRINT(x); x = x + 1; END\ny = 2;\nz = 3;\n";
+        ParsedSource parsed = ParsedSource.parse(source);
+        Assertions.assertEquals(Parser.parse(Lexer.lexBuffer(source)), parsed.getAst());
+        int offset = source.indexOf("y = 2") + 4;
+        ParsedSource edited = parsed.edit(offset, 1, "4 * y");
+        String expected = source.substring(0, offset) + "4 * y" + source.substring(offset + 1);
+        Assertions.assertEquals(Parser.parse(Lexer.lexBuffer(expected)), edited.getAst());
+        List<Ast.Statement> before = parsed.getAst().getStatements();
+        List<Ast.Statement> after = edited.getAst().getStatements();
+        Assertions.assertSame(before.get(0), after.get(0));
+        Assertions.assertSame(before.get(1), after.get(1));
+        Assertions.assertNotSame(before.get(2), after.get(2));
+        Assertions.assertSame(before.get(3), after.get(3));
+    }
+
+    @Test
+    void testSpans() {
+        String source = "x = 1;\nIF y == 2 THEN\n    PRINT(y + 1);\nEND\n";
+        SourceFile file = new SourceFile("test", source);
+        Ast.Source ast = (Ast.Source) Parser.parse(Lexer.lexBuffer(source));
+        Ast.Statement.If statement = (Ast.Statement.If) ast.getStatements().get(1);
+        Ast.Expression.Function print = (Ast.Expression.Function)
+                ((Ast.Statement.Expression) statement.getThenStatements().get(0)).getExpression();
+        Assertions.assertEquals("x = 1", text(source, ast.getStatements().get(0)));
+        Assertions.assertEquals("y == 2", text(source, statement.getCondition()));
+        Assertions.assertEquals("PRINT(y + 1)", text(source, print));
+        Assertions.assertEquals("y + 1", text(source, print.getArguments().get(0)));
+        Assertions.assertEquals("test:2:1", file.format(statement.getSpan()));
+        Assertions.assertEquals("test:3:5", file.format(print.getSpan()));
+        Assertions.assertEquals(5, file.getLineCount());
+        Assertions.assertEquals("test", file.format(Span.NONE));
+        Ast.Source decoded = (Ast.Source) BinaryAst.decode(ByteBuffer.wrap(BinaryAst.encode(ast)));
+        Assertions.assertEquals(ast.getSpan(), decoded.getSpan());
+        Assertions.assertEquals(statement.getSpan(), decoded.getStatements().get(1).getSpan());
+        ParsedSource edited = ParsedSource.parse(source).edit(0, 1, "value");
+        Assertions.assertEquals(4, edited.getShift(1));
+        Assertions.assertEquals(Span.shift(statement.getSpan(), 4),
+                Span.shift(edited.getAst().getStatements().get(1).getSpan(), edited.getShift(1)));
+    }
+
+    @Test
+    void testPipeline() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            source.append("LET x").append(i).append(" : INTEGER = ").append(i).append(";\n");
+            source.append("IF TRUE THEN PRINT(\"").append(i).append("\"); END\n");
+        }
+        List<Ast.Statement> statements = new ArrayList<>();
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        for (Ast.Statement statement : ((Ast.Source) Parser.parse(Lexer.lexBuffer(source.toString()))).getStatements()) {
+            statements.add((Ast.Statement) analyzer.visit(statement));
+        }
+        StringWriter expected = new StringWriter();
+        new Generator(new PrintWriter(expected)).visit(new Ast.Source(statements));
+        StringWriter actual = new StringWriter();
+        Pipeline.compile(Lexer.stream(new StringReader(source.toString())), new Scope(null), new PrintWriter(actual), 4);
+        Assertions.assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    void testPipelineError() {
+        String source = "LET x : INTEGER = 1;\nLET x : INTEGER = 2;\nz = \"unterminated";
+        Assertions.assertThrows(AnalysisException.class, () -> Pipeline.compile(new StringReader(source),
+                new Scope(null), new PrintWriter(new StringWriter())));
+        Assertions.assertThrows(ParseException.class, () -> Pipeline.compile(new StringReader("PRINT(\"a\"); y = 2.;"),
+                new Scope(null), new PrintWriter(new StringWriter())));
+    }
+
+    @Test
+    void testBatchCompiler() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            sources.put("source" + i, "LET x : INTEGER = " + i + ";\nPRINT(\"" + i + "\");");
+        }
+        sources.put("invalid", "LET x : INTEGER = 1;\nLET x : STRING = \"again\";");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BatchCompiler.Report report;
+        try {
+            report = new BatchCompiler(pool).compile(sources);
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(201, report.getResults().size());
+        Assertions.assertEquals(1, report.getFailures());
+        for (int i = 0; i < 200; i++) {
+            BatchCompiler.Result result = report.getResults().get(i);
+            StringWriter expected = new StringWriter();
+            Pipeline.compile(new StringReader(sources.get("source" + i)), new Scope(null), new PrintWriter(expected));
+            Assertions.assertEquals("source" + i, result.getName());
+            Assertions.assertEquals(expected.toString(), result.getOutput());
+        }
+        BatchCompiler.Result invalid = report.getResults().get(200);
+        Assertions.assertTrue(invalid.getException() instanceof AnalysisException);
+        Assertions.assertNull(invalid.getOutput());
+        Assertions.assertEquals(0, invalid.getGenerateNanos());
+    }
+
+    @Test
+    void testStdlibSnapshot() {
+        Stdlib.Registry snapshot = Stdlib.snapshot();
+        Stdlib.registerFunction(new Stdlib.Function("SNAPSHOT", "snapshot", Arrays.asList(), Stdlib.Type.VOID));
+        Ast.Statement statement = ((Ast.Source) Parser.parse(Lexer.lexBuffer("SNAPSHOT();"))).getStatements().get(0);
+        Assertions.assertThrows(AnalysisException.class, () -> new Analyzer(new Scope(null), snapshot).visit(statement));
+        Assertions.assertNotEquals(snapshot.getVersion(), Stdlib.getVersion());
+        Assertions.assertNotNull(new Analyzer(new Scope(null)).visit(statement));
+    }
+
+    private static String text(String source, Ast ast) {
+        return source.substring(Span.getStart(ast.getSpan()), Span.getEnd(ast.getSpan()));
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).
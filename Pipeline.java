@@ -0,0 +1,127 @@
+package plc.compiler;
+
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Compiles a program with the lexer, parser, analyzer and generator running
+ * at the same time, instead of one phase after the other.
+ *
+ * The lexer, parser and analyzer each run on their own thread and the
+ * generator runs on the caller's. Each phase hands its output to the next
+ * through a bounded {@link RingBuffer}: tokens from the lexer to the parser,
+ * and top-level statements from the parser to the analyzer and from the
+ * analyzer to the generator. A phase that gets ahead waits for the next one,
+ * and the parser drops each statement's tokens once it is parsed (see {@link
+ * Parser#Parser(TokenSource)}), so peak memory depends on the capacity and
+ * the largest top-level statement rather than the size of the program.
+ *
+ * Errors are passed down the pipeline in order, so the error thrown from
+ * {@link #compile(TokenSource, Scope, PrintWriter, int)} is the one that
+ * comes first in the program, and the earlier phases are stopped. Unlike
+ * running the phases one at a time, an analysis error is therefore reported
+ * before a lexing or parsing error later in the program.
+ */
+public final class Pipeline {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private Pipeline() {}
+
+    /**
+     * Compiles the program read from the reader into the writer. See {@link
+     * #compile(TokenSource, Scope, PrintWriter, int)}.
+     */
+    public static void compile(Reader reader, Scope scope, PrintWriter writer) throws ParseException, AnalysisException {
+        compile(Lexer.stream(reader), scope, writer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Parses, analyzes (in the given scope) and generates the program made of
+     * the tokens, using buffers of the given capacity between the phases. The
+     * output is the same as generating an {@link Ast.Source} of the analyzed
+     * statements. The scope must not be used by anything else until this
+     * returns.
+     */
+    public static void compile(TokenSource tokens, Scope scope, PrintWriter writer, int capacity) throws ParseException, AnalysisException {
+        RingBuffer<Token> lexed = new RingBuffer<>(capacity);
+        RingBuffer<Ast.Statement> parsed = new RingBuffer<>(capacity);
+        RingBuffer<Ast.Statement> analyzed = new RingBuffer<>(capacity);
+        start("lexer", null, lexed, () -> {
+            while (tokens.hasNext()) {
+                lexed.put(tokens.next());
+            }
+        });
+        start("parser", lexed, parsed, () -> {
+            Parser parser = new Parser(source(lexed));
+            List<Ast.Statement> statements = new ArrayList<>(1);
+            while (parser.parseSourceStatement(statements)) {
+                parsed.put(statements.remove(0));
+                parser.release();
+            }
+            while (lexed.hasNext()) { //like Parser#parse, the rest of the input must still lex
+                lexed.next();
+            }
+        });
+        start("analyzer", parsed, analyzed, () -> {
+            Analyzer analyzer = new Analyzer(scope);
+            while (parsed.hasNext()) {
+                analyzed.put((Ast.Statement) analyzer.visit(parsed.next()));
+            }
+        });
+        try {
+            Generator generator = new Generator(writer);
+            generator.printHeader();
+            while (analyzed.hasNext()) {
+                generator.printStatement(analyzed.next());
+            }
+            generator.printFooter();
+        } finally {
+            analyzed.close();
+        }
+    }
+
+    /**
+     * Runs a phase on a new daemon thread. When the phase returns its output
+     * is finished, and if it throws the exception is passed on to the next
+     * phase. Either way, its input is closed so the previous phase stops.
+     */
+    private static void start(String name, RingBuffer<?> input, RingBuffer<?> output, Runnable phase) {
+        Thread thread = new Thread(() -> {
+            try {
+                phase.run();
+                output.finish();
+            } catch (CancellationException e) {
+                //the next phase stopped, so there is no one to pass anything on to
+            } catch (RuntimeException | Error e) {
+                output.fail(e);
+            } finally {
+                if (input != null) {
+                    input.close();
+                }
+            }
+        }, "plc-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static TokenSource source(RingBuffer<Token> tokens) {
+        return new TokenSource() {
+
+            @Override
+            public boolean hasNext() {
+                return tokens.hasNext();
+            }
+
+            @Override
+            public Token next() {
+                return tokens.next();
+            }
+
+        };
+    }
+
+}
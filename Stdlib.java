@@ -1,43 +1,140 @@
 package plc.compiler;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public final class Stdlib {
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
-    private static final Map<String, Function> FUNCTIONS = new HashMap<>();
+    /**
+     * The registered types and functions. Like the parser's operator table,
+     * the registry is replaced rather than modified when something is
+     * registered, so a registry never changes once it is published and
+     * lookups from many compiler threads at once (see {@link BatchCompiler})
+     * never need to lock.
+     */
+    private static volatile Registry REGISTRY = new Registry(new HashMap<>(), new HashMap<>());
 
     public static Type getType(String name) throws AnalysisException {
-        if (!TYPES.containsKey(name)) {
-            throw new AnalysisException("Unknown type " + name + ".");
-        }
-        return TYPES.get(name);
+        return REGISTRY.getType(name);
     }
 
     public static Function getFunction(String name, int arity) throws AnalysisException {
-        String signature = name + "/" + arity;
-        if (!FUNCTIONS.containsKey(signature)) {
-            throw new AnalysisException("Unknown function " + signature + ".");
+        return REGISTRY.getFunction(name, arity);
+    }
+
+    /**
+     * Returns the current registry. Since it never changes, everything
+     * resolved against it is consistent even if something is registered
+     * meanwhile, so a compilation should resolve against one snapshot
+     * throughout (see {@link Analyzer#Analyzer(Scope, Registry)}).
+     */
+    public static Registry snapshot() {
+        return REGISTRY;
+    }
+
+    /**
+     * Returns a fingerprint of the registered types and functions which
+     * changes whenever a registration is added. It is computed from the
+     * registrations themselves, so processes which register the same types
+     * and functions agree on it (used by {@link CompilationCache}).
+     */
+    public static long getVersion() {
+        return REGISTRY.version;
+    }
+
+    /**
+     * Mixes the characters of the string (and a separator) into an FNV-1a
+     * hash.
+     */
+    private static long hash(long hash, String string) {
+        for (int i = 0; i <= string.length(); i++) {
+            hash ^= i < string.length() ? string.charAt(i) : 0xFFFF;
+            hash *= 0x100000001b3L;
         }
-        return FUNCTIONS.get(signature);
+        return hash;
     }
 
-    public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
+    public static synchronized void registerType(Type type) {
+        Registry registry = REGISTRY;
+        if (registry.types.containsKey(type.getName())) {
             throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
         }
-        TYPES.put(type.getName(), type);
+        Map<String, Type> types = new HashMap<>(registry.types);
+        types.put(type.getName(), type);
+        REGISTRY = new Registry(types, registry.functions);
     }
 
-    public static void registerFunction(Function function) {
+    public static synchronized void registerFunction(Function function) {
+        Registry registry = REGISTRY;
         String signature = function.getName() + "/" + function.getParameterTypes().size();
-        if (FUNCTIONS.containsKey(signature)) {
+        if (registry.functions.containsKey(signature)) {
             throw new IllegalArgumentException("Duplicate registration of function " + signature + ".");
         }
-        FUNCTIONS.put(signature, function);
+        Map<String, Function> functions = new HashMap<>(registry.functions);
+        functions.put(signature, function);
+        REGISTRY = new Registry(registry.types, functions);
+    }
+
+    /**
+     * An immutable snapshot of the registered types and functions, keyed by
+     * name and by signature, along with its version.
+     */
+    public static final class Registry {
+
+        private final Map<String, Type> types;
+        private final Map<String, Function> functions;
+        private final long version;
+
+        private Registry(Map<String, Type> types, Map<String, Function> functions) {
+            this.types = Collections.unmodifiableMap(types);
+            this.functions = Collections.unmodifiableMap(functions);
+            this.version = version(types, functions);
+        }
+
+        public Type getType(String name) throws AnalysisException {
+            Type type = types.get(name);
+            if (type == null) {
+                throw new AnalysisException("Unknown type " + name + ".");
+            }
+            return type;
+        }
+
+        public Function getFunction(String name, int arity) throws AnalysisException {
+            String signature = name + "/" + arity;
+            Function function = functions.get(signature);
+            if (function == null) {
+                throw new AnalysisException("Unknown function " + signature + ".");
+            }
+            return function;
+        }
+
+        /**
+         * See {@link Stdlib#getVersion()}.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        private static long version(Map<String, Type> types, Map<String, Function> functions) {
+            long hash = 0xcbf29ce484222325L;
+            for (Type type : new TreeMap<>(types).values()) {
+                hash = hash(hash, type.getName() + ":" + type.getJvmName());
+            }
+            for (Map.Entry<String, Function> entry : new TreeMap<>(functions).entrySet()) {
+                Function function = entry.getValue();
+                hash = hash(hash, entry.getKey() + ":" + function.getJvmName());
+                for (Type type : function.getParameterTypes()) {
+                    hash = hash(hash, type.getName());
+                }
+                hash = hash(hash, function.getReturnType().getName());
+            }
+            return hash;
+        }
+
     }
 
     public static final class Type {